@@ -27,11 +27,11 @@ public class AddDeadlineCommand extends Command {
 
     /**
      * Executes this command: validates input, parses the due datetime, creates the deadline task,
-     * adds it to the task list, displays a confirmation, and saves to storage.
+     * adds it to the task list, displays a confirmation, and records the change in storage.
      *
      * @param tasks the task list to add the deadline into
      * @param ui the user interface to display feedback
-     * @param storage the storage to persist the updated task list
+     * @param storage the storage that journals the change
      * @throws YinException if the input is invalid or parsing fails
      */
     @Override
@@ -39,10 +39,10 @@ public class AddDeadlineCommand extends Command {
         validateInput();
 
         LocalDateTime by = parseBy(byRaw);
-        Task task = tasks.addDeadline(normalise(description), by);
+        Task task = tasks.addDeadline(Tokenizer.collapseSpaces(description), by);
 
         ui.showAdded(task, tasks.size());
-        storage.save(tasks.asList());
+        storage.recordAdded(task, tasks);
     }
 
     /**
@@ -74,14 +74,4 @@ public class AddDeadlineCommand extends Command {
                     + "\nTry formats like 2019-10-15 or 2/12/2019 1800.");
         }
     }
-
-    /**
-     * Normalises whitespace in a string by trimming and collapsing spaces.
-     *
-     * @param s the input string
-     * @return the normalised string
-     */
-    private static String normalise(String s) {
-        return s.trim().replaceAll("\\s+", " ");
-    }
 }
@@ -32,11 +32,11 @@ public class AddEventCommand extends Command {
 
     /**
      * Executes this command: validates inputs, parses datetimes, creates the event task,
-     * adds it to the task list, displays a confirmation, and saves to storage.
+     * adds it to the task list, displays a confirmation, and records the change in storage.
      *
      * @param tasks the task list to add the event into
      * @param ui the user interface to display feedback
-     * @param storage the storage to persist the updated task list
+     * @param storage the storage that journals the change
      * @throws YinException if the input is invalid or parsing fails
      */
     @Override
@@ -49,9 +49,9 @@ public class AddEventCommand extends Command {
             throw new YinException("The end date/time cannot be before start date/time!");
         }
 
-        Task task = tasks.addEvent(normalise(description), from, to);
+        Task task = tasks.addEvent(Tokenizer.collapseSpaces(description), from, to);
         ui.showAdded(task, tasks.size());
-        storage.save(tasks.asList());
+        storage.recordAdded(task, tasks);
     }
 
     /**
@@ -85,14 +85,4 @@ public class AddEventCommand extends Command {
                     + "\nTry formats like 2019-10-15 or 2/12/2019 1800.");
         }
     }
-
-    /**
-     * Normalises whitespace in a string by trimming and collapsing spaces.
-     *
-     * @param s the input string
-     * @return the normalised string
-     */
-    private static String normalise(String s) {
-        return s.trim().replaceAll("\\s+", " ");
-    }
 }
@@ -20,11 +20,11 @@ public class AddTodoCommand extends Command {
 
     /**
      * Executes this command: validates the description, creates the todo task,
-     * adds it to the task list, displays a confirmation, and saves to storage.
+     * adds it to the task list, displays a confirmation, and records the change in storage.
      *
      * @param tasks the task list to add the todo into
      * @param ui the user interface to display feedback
-     * @param storage the storage to persist the updated task list
+     * @param storage the storage that journals the change
      * @throws YinException if the description is missing or blank
      */
     @Override
@@ -33,8 +33,8 @@ public class AddTodoCommand extends Command {
             throw new YinException("todo needs a description!"
                     + "\ne.g.\"todo borrow book\"");
         }
-        Task task = tasks.addTodo(description.trim().replaceAll("\\s+", " "));
+        Task task = tasks.addTodo(Tokenizer.collapseSpaces(description));
         ui.showAdded(task, tasks.size());
-        storage.save(tasks.asList());
+        storage.recordAdded(task, tasks);
     }
 }
@@ -17,10 +17,20 @@ public class AppCore {
      * Loads tasks from "data/Yin.txt".
      */
     public AppCore() {
-        this.storage = new Storage("data/Yin.txt");
+        this(Config.createStorage("data/Yin.txt"));
+    }
+
+    /**
+     * Creates a new AppCore working on the given storage, and loads its tasks.
+     *
+     * @param storage the storage to load from and save to
+     */
+    public AppCore(Storage storage) {
+        this.storage = storage;
         List<Task> loaded = storage.load();
         assert loaded != null : "Storage.load() should not return null";
-        this.tasks = new TaskList(storage.load());
+        this.tasks = Config.createTaskList(loaded);
+        this.tasks.reserveIds(storage.getNextId());
     }
 
     /**
@@ -52,6 +62,53 @@ public class AppCore {
         return fxUi.flush();
     }
 
+    /**
+     * Runs a script of commands, one per line, as a batch: nothing is written to disk until the
+     * script ends, and then the task list is saved once. Blank lines are skipped. Output,
+     * including errors, goes to the given Ui. The batch ends early at an exit command, and at
+     * the first error unless told to continue past errors.
+     *
+     * @param lines the commands to run, in order
+     * @param ui the Ui that shows the output of each command
+     * @param isStoppingAtError whether to stop at the first command that fails
+     * @return counts and timing of the batch
+     */
+    public BatchStats runBatch(List<String> lines, Ui ui, boolean isStoppingAtError) {
+        BatchStats stats = new BatchStats();
+        long start = System.nanoTime();
+        storage.beginBatch();
+        try {
+            long lineNumber = 0;
+            for (String line : lines) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                boolean isFailed = false;
+                boolean isExit = false;
+                try {
+                    Command c = Parser.parse(line);
+                    assert c != null : "Parser should never return null command";
+                    c.execute(tasks, ui, storage);
+                    isExit = c.isExit();
+                } catch (YinException e) {
+                    ui.showError(e.getMessage());
+                    isFailed = true;
+                }
+                stats.countCommand(isFailed);
+                if (isExit || (isFailed && isStoppingAtError)) {
+                    isExited = isExit;
+                    stats.stopAt(lineNumber);
+                    break;
+                }
+            }
+        } finally {
+            storage.endBatch(tasks);
+        }
+        stats.setNanos(System.nanoTime() - start);
+        return stats;
+    }
+
     /**
      * Returns the welcome message shown when the application starts.
      *
@@ -0,0 +1,827 @@
+package yin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The archive of tasks moved out of the active list, kept as a directory of segments.
+ * Each segment holds archived tasks in the Storage line format. New tasks are appended to the
+ * active segment, segment-NNNNNN.txt; once it reaches the size bound it is sealed by
+ * compressing it to segment-NNNNNN.txt.gz, and a new active segment is started.
+ *
+ * <p>Next to every segment is a sidecar index, segment-NNNNNN.idx, with one fixed-size entry
+ * per task: its byte offset in the uncompressed segment (long), a flags byte (type and done,
+ * as in BinarySnapshot), and the start and end of its date range as epoch seconds at UTC
+ * (longs; NO_TIME for todos). Searches can skip segments and restores can read one task
+ * without scanning the history.</p>
+ *
+ * <p>Appends are two-phase so they can be tied to a snapshot of the active list: prepare()
+ * records the tasks, a token that the snapshot's header carries, and the current end of the
+ * archive in an intent file; complete() appends them and deletes the intent. recover() redoes
+ * or discards an append interrupted by a crash, depending on whether the snapshot on disk carries
+ * the token.
+ * Segments are only sealed once no intent refers to them.</p>
+ *
+ * <p>Tasks are numbered from 1 across all segments, oldest first. remove() takes a task out by
+ * rewriting only the segment that holds it, again behind an intent so a crash cannot leave the
+ * segment and its index out of step.</p>
+ */
+final class Archive {
+    /** Default size in bytes from which the active segment is sealed. */
+    static final long DEFAULT_SEGMENT_BYTES = 1L << 20;
+    /** Size in bytes of one sidecar index entry. */
+    static final int INDEX_ENTRY_BYTES = 8 + 1 + 8 + 8;
+    /** Date range value of tasks without dates. */
+    static final long NO_TIME = Long.MIN_VALUE;
+    private static final int TODO = 0;
+    private static final int DEADLINE = 1;
+    private static final int EVENT = 2;
+    private static final int DONE = 0x4;
+    /** Prefix of the header line of the intent file of an append. */
+    private static final String INTENT_PREFIX = "# archive ";
+    /** Prefix of the header line of the intent file of a removal. */
+    private static final String REMOVAL_PREFIX = "# unarchive ";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String PLAIN_SUFFIX = ".txt";
+    private static final String SEALED_SUFFIX = ".txt.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Directory holding the segments. */
+    private final Path dir;
+    /** Single archive file written by earlier versions, migrated into segments on first use. */
+    private final Path legacyFile;
+    /** Intent file of an append in progress. */
+    private final Path intentFile;
+    /** How far writes are forced to disk before they count as done. */
+    private Durability durability = Durability.NONE;
+    /** Size in bytes from which the active segment is sealed. */
+    private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+
+    /**
+     * Creates an archive stored in the given directory.
+     *
+     * @param dir directory holding the segments
+     * @param legacyFile single-file archive of earlier versions, migrated on first use
+     */
+    Archive(Path dir, Path legacyFile) {
+        this.dir = dir;
+        this.legacyFile = legacyFile;
+        this.intentFile = dir.resolve("pending");
+    }
+
+    /**
+     * Sets how far archive writes are forced to disk.
+     *
+     * @param durability the durability level
+     */
+    void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Sets the size in bytes from which the active segment is sealed.
+     *
+     * @param segmentBytes the segment size bound
+     */
+    void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Records the tasks to append in the intent file, along with the token carried by the
+     * active-list snapshot that will no longer contain them. Nothing is appended yet.
+     *
+     * @param tasks the tasks to archive, in order
+     * @param token archive token of the snapshot written between prepare() and complete()
+     * @throws IOException if the intent cannot be written
+     */
+    void prepare(List<Task> tasks, long token) throws IOException {
+        open();
+        int segment = activeSegment();
+        long segmentLength = sizeOf(plainFile(segment));
+        long indexLength = sizeOf(indexFile(segment));
+
+        Path temp = dir.resolve("pending.tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(INTENT_PREFIX + token + " " + segment + " " + segmentLength + " " + indexLength);
+            out.newLine();
+            for (Task t : tasks) {
+                out.write(TaskFormat.serialise(t));
+                out.newLine();
+            }
+        }
+        durability.replace(temp, intentFile);
+    }
+
+    /**
+     * Appends the tasks recorded by prepare(), deletes the intent and seals full segments.
+     * The archive is first cut back to where it ended at prepare(), so completing an append
+     * a second time does not duplicate it.
+     *
+     * @throws IOException if the archive cannot be written
+     */
+    void complete() throws IOException {
+        Intent intent = readIntent();
+        if (intent == null) {
+            Files.deleteIfExists(intentFile);
+            return;
+        }
+        // Segments after the recorded one can only come from an earlier attempt at this append.
+        for (int n : segments()) {
+            if (n > intent.segment) {
+                deleteSegment(n);
+            }
+        }
+
+        int segment = intent.segment;
+        FileChannel data = openForAppend(plainFile(segment), intent.segmentLength);
+        FileChannel index = openForAppend(indexFile(segment), intent.indexLength);
+        try (BufferedReader in = Files.newBufferedReader(intentFile, StandardCharsets.UTF_8)) {
+            in.readLine();
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            String nl = System.lineSeparator();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                Task t = TaskFormat.parse(line);
+                if (t == null) {
+                    continue;
+                }
+                if (data.size() >= segmentBytes) {
+                    closeAll(data, index);
+                    segment++;
+                    data = openForAppend(plainFile(segment), 0);
+                    index = openForAppend(indexFile(segment), 0);
+                }
+                entry.clear();
+                writeEntry(entry, data.size(), t);
+                entry.flip();
+                writeFully(index, entry);
+                writeFully(data, ByteBuffer.wrap((line + nl).getBytes(StandardCharsets.UTF_8)));
+            }
+        } finally {
+            closeAll(data, index);
+        }
+        durability.syncDirectory(plainFile(segment));
+        Files.delete(intentFile);
+        durability.syncDirectory(intentFile);
+        sealFullSegments();
+    }
+
+    /**
+     * Deletes the intent of an append that will not happen, because its snapshot was not written.
+     *
+     * @throws IOException if the intent cannot be deleted
+     */
+    void discard() throws IOException {
+        if (Files.deleteIfExists(intentFile)) {
+            durability.syncDirectory(intentFile);
+        }
+    }
+
+    /**
+     * Migrates a legacy archive file, then finishes or discards an append interrupted by a crash.
+     * The append is finished if the snapshot it was tied to made it to disk, which the snapshot
+     * on disk, and every one written after it, shows by carrying its token.
+     *
+     * @param token archive token of the snapshot on disk, or 0 if it has none
+     * @throws IOException if the archive cannot be updated
+     */
+    void recover(long token) throws IOException {
+        if (Files.exists(legacyFile)) {
+            migrateLegacy();
+        }
+        if (!Files.exists(intentFile)) {
+            return;
+        }
+        long[] removal = readRemoval();
+        if (removal != null) {
+            // The active list was saved before the intent was written, so always finish.
+            removeLine((int) removal[0], (int) removal[1], (int) removal[2]);
+            Files.delete(intentFile);
+            durability.syncDirectory(intentFile);
+            return;
+        }
+        Intent intent = readIntent();
+        if (intent != null && intent.token == token) {
+            complete();
+        } else {
+            discard();
+        }
+    }
+
+    /**
+     * Moves the tasks of the single-file archive written by earlier versions into segments.
+     * Segments left by an interrupted migration are rebuilt from scratch.
+     *
+     * @throws IOException if the archive cannot be migrated
+     */
+    private void migrateLegacy() throws IOException {
+        Files.createDirectories(dir);
+        for (int n : segments()) {
+            deleteSegment(n);
+        }
+        Path temp = dir.resolve("pending.tmp");
+        try (BufferedReader in = Files.newBufferedReader(legacyFile, StandardCharsets.UTF_8);
+                BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(INTENT_PREFIX + "0 0 0 0");
+            out.newLine();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        durability.replace(temp, intentFile);
+        complete();
+        Files.delete(legacyFile);
+        durability.syncDirectory(legacyFile);
+    }
+
+    /**
+     * Creates the archive directory if needed, tidies up after an interrupted seal and
+     * seals the active segment if it is full.
+     *
+     * @throws IOException if the directory cannot be prepared
+     */
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        for (int n : segments()) {
+            // A crash mid-seal can leave both copies; the plain one is complete.
+            if (Files.exists(plainFile(n))) {
+                Files.deleteIfExists(sealedFile(n));
+            }
+        }
+        sealFullSegments();
+    }
+
+    /**
+     * Compresses every plain segment that has reached the size bound or is no longer the last.
+     *
+     * @throws IOException if a segment cannot be sealed
+     */
+    private void sealFullSegments() throws IOException {
+        TreeSet<Integer> all = segments();
+        for (int n : all) {
+            Path plain = plainFile(n);
+            if (Files.exists(plain) && (n != all.last() || Files.size(plain) >= segmentBytes)) {
+                seal(n);
+            }
+        }
+    }
+
+    /**
+     * Compresses a plain segment and deletes the uncompressed copy.
+     *
+     * @param n the segment number
+     * @throws IOException if the segment cannot be sealed
+     */
+    private void seal(int n) throws IOException {
+        Path sealed = sealedFile(n);
+        Path temp = sealed.resolveSibling(sealed.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+            Files.copy(plainFile(n), out);
+        }
+        durability.replace(temp, sealed);
+        Files.delete(plainFile(n));
+        durability.syncDirectory(sealed);
+    }
+
+    /**
+     * Returns the segment that new tasks are appended to: the last plain segment,
+     * or a new one after the last sealed segment.
+     *
+     * @return the active segment number
+     * @throws IOException if the directory cannot be listed
+     */
+    private int activeSegment() throws IOException {
+        TreeSet<Integer> all = segments();
+        if (all.isEmpty()) {
+            return 0;
+        }
+        int last = all.last();
+        return Files.exists(plainFile(last)) ? last : last + 1;
+    }
+
+    /**
+     * Returns the numbers of all segments in the archive directory, in order.
+     *
+     * @return the segment numbers
+     * @throws IOException if the directory cannot be listed
+     */
+    TreeSet<Integer> segments() throws IOException {
+        TreeSet<Integer> numbers = new TreeSet<>();
+        if (!Files.isDirectory(dir)) {
+            return numbers;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(PLAIN_SUFFIX) || name.endsWith(SEALED_SUFFIX)) {
+                    String digits = name.substring(SEGMENT_PREFIX.length(), name.indexOf('.'));
+                    try {
+                        numbers.add(Integer.parseInt(digits));
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Streams every segment, oldest first, and reports the tasks whose description contains
+     * the keyword (case-insensitive), as TaskList.find does. Only one buffer's worth of the
+     * archive is in memory at a time, and lines that cannot contain the keyword are skipped
+     * without being parsed.
+     *
+     * @param word the keyword to look for
+     * @param onMatch receives each matching task with its 1-based number in the archive
+     * @return the number of matches
+     * @throws IOException if a segment cannot be read
+     */
+    int search(String word, ObjLongConsumer<Task> onMatch) throws IOException {
+        String w = word.toLowerCase();
+        int matches = 0;
+        long number = 0;
+        for (int n : segments()) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(openSegment(n), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    number++;
+                    // The description is part of the line, so a line without the keyword cannot match.
+                    if (!mayContain(line, w)) {
+                        continue;
+                    }
+                    Task t = TaskFormat.parse(line);
+                    if (t != null && t.getFoldedDescription().contains(w)) {
+                        matches++;
+                        onMatch.accept(t, number);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns whether a line may contain the keyword once lower-cased, comparing in place
+     * rather than lower-casing a copy of the line. Lines with characters outside ASCII are
+     * always let through, as lower-casing them can change their length.
+     *
+     * @param line a line of a segment
+     * @param w the keyword in lower case
+     * @return false only if the line cannot contain the keyword
+     */
+    private static boolean mayContain(String line, String w) {
+        int last = line.length() - w.length();
+        for (int i = 0; i <= last; i++) {
+            if (line.regionMatches(true, i, w, 0, w.length())) {
+                return true;
+            }
+        }
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the highest id of any archived task, by streaming every segment. Only needed for
+     * data saved before the active list recorded its next id.
+     *
+     * @return the highest id, or 0 if no archived task has one
+     * @throws IOException if a segment cannot be read
+     */
+    long maxId() throws IOException {
+        long max = 0;
+        for (int n : segments()) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(openSegment(n), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    Task t = TaskFormat.parse(line);
+                    if (t != null) {
+                        max = Math.max(max, t.getId());
+                    }
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Reads one archived task. The sidecar indexes give the segment and the byte offset of its
+     * line, so only that line is read; a sealed segment is decompressed up to it and no further.
+     *
+     * @param number the task's 1-based number in the archive
+     * @return the task, or null if there is no such task
+     * @throws IOException if the archive cannot be read
+     */
+    Task read(long number) throws IOException {
+        int[] location = locate(number);
+        if (location == null) {
+            return null;
+        }
+        long offset = readOffsets(location[0])[location[1]];
+        try (InputStream raw = openSegment(location[0])) {
+            raw.skipNBytes(offset);
+            BufferedReader in = new BufferedReader(new InputStreamReader(raw, StandardCharsets.UTF_8));
+            String line = in.readLine();
+            return line == null ? null : TaskFormat.parse(line);
+        }
+    }
+
+    /**
+     * Returns whether an append or removal intent is on disk, waiting to be finished by recover().
+     *
+     * @return true if the intent file exists
+     */
+    boolean hasIntent() {
+        return Files.exists(intentFile);
+    }
+
+    /**
+     * Removes one archived task, rewriting only the segment that holds it and its index.
+     * Later tasks move up by one number.
+     *
+     * @param number the task's 1-based number in the archive
+     * @return whether there was such a task
+     * @throws IOException if the archive cannot be updated, or an append is still pending
+     */
+    boolean remove(long number) throws IOException {
+        if (Files.exists(intentFile)) {
+            // Overwriting an unfinished append's intent would lose its tasks; recover() first.
+            throw new IOException("An earlier archive is still pending");
+        }
+        int[] location = locate(number);
+        if (location == null) {
+            return false;
+        }
+        int n = location[0];
+        Path temp = dir.resolve("pending.tmp");
+        Files.write(temp, (REMOVAL_PREFIX + n + " " + location[1] + " " + countOf(n) + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8));
+        durability.replace(temp, intentFile);
+        removeLine(n, location[1], countOf(n));
+        Files.delete(intentFile);
+        durability.syncDirectory(intentFile);
+        return true;
+    }
+
+    /**
+     * Finds the segment holding an archived task and the task's position in it.
+     *
+     * @param number the task's 1-based number in the archive
+     * @return the segment number and 0-based position, or null if there is no such task
+     * @throws IOException if the indexes cannot be read
+     */
+    private int[] locate(long number) throws IOException {
+        if (number < 1) {
+            return null;
+        }
+        long remaining = number;
+        for (int n : segments()) {
+            int count = countOf(n);
+            if (remaining <= count) {
+                return new int[] {n, (int) remaining - 1};
+            }
+            remaining -= count;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the line offsets from a segment's index.
+     *
+     * @param n the segment number
+     * @return the byte offset of each task's line, in order
+     * @throws IOException if the index cannot be read
+     */
+    private long[] readOffsets(int n) throws IOException {
+        long[] offsets = new long[countOf(n)];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile(n))))) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+                in.skipNBytes(INDEX_ENTRY_BYTES - Long.BYTES);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Removes line k from a segment that had count lines, then drops its index entry and
+     * shifts the offsets after it. The segment is replaced before the index, and each step is
+     * skipped if it already happened, so this can be repeated after a crash.
+     *
+     * @param n the segment number
+     * @param k 0-based position of the line to remove
+     * @param count number of lines in the segment before the removal
+     * @throws IOException if the segment cannot be rewritten
+     */
+    private void removeLine(int n, int k, int count) throws IOException {
+        byte[] data;
+        try (InputStream in = openSegment(n)) {
+            data = in.readAllBytes();
+        }
+        // Lines are counted in the data itself, which may be newer than the index; only the
+        // bounds of line k are kept.
+        int lines = 0;
+        int start = -1;
+        int end = data.length;
+        for (int i = 0; i < data.length; i++) {
+            if (i == 0 || data[i - 1] == '\n') {
+                if (lines == k) {
+                    start = i;
+                } else if (lines == k + 1) {
+                    end = i;
+                }
+                lines++;
+            }
+        }
+        long[] offsets = readOffsets(n);
+        if (lines == count && k < count) {
+            boolean isSealed = !Files.exists(plainFile(n));
+            Path target = isSealed ? sealedFile(n) : plainFile(n);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream out = isSealed
+                    ? new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)
+                    : Files.newOutputStream(temp)) {
+                out.write(data, 0, start);
+                out.write(data, end, data.length - end);
+            }
+            durability.replace(temp, target);
+        }
+        if (offsets.length == count && k < count) {
+            long removed = k + 1 < count ? offsets[k + 1] - offsets[k] : 0;
+            ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(indexFile(n)));
+            ByteBuffer rewritten = ByteBuffer.allocate((count - 1) * INDEX_ENTRY_BYTES);
+            for (int i = 0; i < count; i++) {
+                if (i == k) {
+                    continue;
+                }
+                int at = i * INDEX_ENTRY_BYTES;
+                rewritten.putLong(entries.getLong(at) - (i > k ? removed : 0));
+                rewritten.put(entries.array(), at + Long.BYTES, INDEX_ENTRY_BYTES - Long.BYTES);
+            }
+            Path temp = indexFile(n).resolveSibling(indexFile(n).getFileName() + ".tmp");
+            Files.write(temp, rewritten.array());
+            durability.replace(temp, indexFile(n));
+        }
+    }
+
+    /**
+     * Reads the header of the intent file if it describes a removal.
+     *
+     * @return the segment number, line position and line count before the removal,
+     *         or null if the intent is not a removal
+     * @throws IOException if the file cannot be read
+     */
+    private long[] readRemoval() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(intentFile, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith(REMOVAL_PREFIX)) {
+                return null;
+            }
+            String[] parts = header.substring(REMOVAL_PREFIX.length()).trim().split(" ");
+            try {
+                return new long[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2])};
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Opens a segment for reading, decompressing it if it is sealed.
+     *
+     * @param n the segment number
+     * @return a stream of the segment's uncompressed bytes
+     * @throws IOException if the segment cannot be opened
+     */
+    InputStream openSegment(int n) throws IOException {
+        Path plain = plainFile(n);
+        if (Files.exists(plain)) {
+            return Files.newInputStream(plain);
+        }
+        return new GZIPInputStream(Files.newInputStream(sealedFile(n)), BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the sidecar index of a segment for reading.
+     *
+     * @param n the segment number
+     * @return a stream of the segment's index entries
+     * @throws IOException if the index cannot be opened
+     */
+    DataInputStream openIndex(int n) throws IOException {
+        return new DataInputStream(Files.newInputStream(indexFile(n)));
+    }
+
+    /**
+     * Returns the number of tasks in a segment, from the size of its index.
+     *
+     * @param n the segment number
+     * @return the number of tasks
+     * @throws IOException if the index cannot be read
+     */
+    int countOf(int n) throws IOException {
+        return (int) (sizeOf(indexFile(n)) / INDEX_ENTRY_BYTES);
+    }
+
+    /**
+     * Writes the index entry of a task.
+     *
+     * @param entry the buffer to write to
+     * @param offset byte offset of the task's line in its segment
+     * @param t the task
+     */
+    private static void writeEntry(ByteBuffer entry, long offset, Task t) {
+        int type = TODO;
+        long from = NO_TIME;
+        long to = NO_TIME;
+        if (t instanceof Deadline) {
+            type = DEADLINE;
+            from = ((Deadline) t).getBy().toEpochSecond(ZoneOffset.UTC);
+            to = from;
+        } else if (t instanceof Event) {
+            type = EVENT;
+            from = ((Event) t).getFrom().toEpochSecond(ZoneOffset.UTC);
+            to = ((Event) t).getTo().toEpochSecond(ZoneOffset.UTC);
+        }
+        entry.putLong(offset);
+        entry.put((byte) (type | (t.isDone() ? DONE : 0)));
+        entry.putLong(from);
+        entry.putLong(to);
+    }
+
+    /**
+     * Reads the header of the intent file.
+     *
+     * @return the intent, or null if the header is malformed
+     * @throws IOException if the file cannot be read
+     */
+    private Intent readIntent() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(intentFile, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith(INTENT_PREFIX)) {
+                return null;
+            }
+            String[] parts = header.substring(INTENT_PREFIX.length()).trim().split(" ");
+            try {
+                return new Intent(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Opens a file for appending after cutting it back to the given length.
+     *
+     * @param path the file
+     * @param length the length to keep
+     * @return a channel positioned at the end of the file
+     * @throws IOException if the file cannot be opened
+     */
+    private static FileChannel openForAppend(Path path, long length) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (ch.size() > length) {
+            ch.truncate(length);
+        }
+        ch.position(ch.size());
+        return ch;
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     *
+     * @param ch the channel
+     * @param bytes the bytes to write
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel ch, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            ch.write(bytes);
+        }
+    }
+
+    /**
+     * Forces the segment and index channels to disk if the durability level asks for it,
+     * and closes them.
+     *
+     * @param data the segment channel
+     * @param index the index channel
+     * @throws IOException if syncing or closing fails
+     */
+    private void closeAll(FileChannel data, FileChannel index) throws IOException {
+        try (FileChannel d = data; FileChannel i = index) {
+            if (durability != Durability.NONE) {
+                d.force(false);
+                i.force(false);
+            }
+        }
+    }
+
+    /**
+     * Deletes all files of a segment.
+     *
+     * @param n the segment number
+     * @throws IOException if a file cannot be deleted
+     */
+    private void deleteSegment(int n) throws IOException {
+        Files.deleteIfExists(plainFile(n));
+        Files.deleteIfExists(sealedFile(n));
+        Files.deleteIfExists(indexFile(n));
+    }
+
+    /**
+     * Returns the size of a file, or 0 if it does not exist.
+     *
+     * @param path the file
+     * @return its size in bytes
+     * @throws IOException if the size cannot be read
+     */
+    private static long sizeOf(Path path) throws IOException {
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    /**
+     * Returns the path of a segment while it is active.
+     *
+     * @param n the segment number
+     * @return the uncompressed segment file
+     */
+    private Path plainFile(int n) {
+        return dir.resolve(name(n) + PLAIN_SUFFIX);
+    }
+
+    /**
+     * Returns the path of a segment once it is sealed.
+     *
+     * @param n the segment number
+     * @return the compressed segment file
+     */
+    private Path sealedFile(int n) {
+        return dir.resolve(name(n) + SEALED_SUFFIX);
+    }
+
+    /**
+     * Returns the path of a segment's sidecar index.
+     *
+     * @param n the segment number
+     * @return the index file
+     */
+    private Path indexFile(int n) {
+        return dir.resolve(name(n) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Returns the file name of a segment without its suffix.
+     *
+     * @param n the segment number
+     * @return the base name
+     */
+    private static String name(int n) {
+        return String.format("%s%06d", SEGMENT_PREFIX, n);
+    }
+
+    /** Header of the intent file: the snapshot's token, and where the archive ended before the append. */
+    private static final class Intent {
+        private final long token;
+        private final int segment;
+        private final long segmentLength;
+        private final long indexLength;
+
+        Intent(long token, int segment, long segmentLength, long indexLength) {
+            this.token = token;
+            this.segment = segment;
+            this.segmentLength = segmentLength;
+            this.indexLength = indexLength;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package yin;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -24,9 +23,9 @@ public class ArchiveCommand extends Command {
     }
 
     /**
-     * Executes the archive command: selects tasks according to the scope, appends them
-     * to the archive via storage, removes them from the active list, shows a summary,
-     * and saves the remaining tasks.
+     * Executes the archive command: has storage move the tasks selected by the scope to the
+     * archive and save the remaining tasks in one step, then removes them from the active list
+     * and shows a summary. If storage fails, the active list is left as it was.
      *
      * @param tasks the active task list to read from and mutate
      * @param ui the user interface to display feedback
@@ -35,30 +34,30 @@ public class ArchiveCommand extends Command {
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
-        List<Task> toArchive = new ArrayList<>();
+        List<Task> toArchive;
+        List<Task> remaining;
 
         if (scope == Scope.ALL) {
-            // Copy everything in current order, then clear the list.
-            toArchive.addAll(tasks.asList());
-            tasks.clear();
+            // Storage is done with the view before the list is cleared below.
+            toArchive = tasks.view();
+            remaining = List.of();
         } else { // Scope.DONE
-            // Walk backwards so indices remain valid; re-insert at front to keep original order.
-            for (int i = tasks.size() - 1; i >= 0; i--) {
-                Task t = tasks.get(i);
-                if (t.isDone()) {
-                    toArchive.add(0, t);
-                    tasks.remove(i);
-                }
-            }
+            toArchive = tasks.withStatus(true);
+            remaining = tasks.withStatus(false);
         }
 
-        if (toArchive.isEmpty()) {
+        int count = toArchive.size();
+        if (count == 0) {
             ui.showArchived(0, scope.name().toLowerCase());
             return;
         }
 
-        storage.appendArchive(toArchive);
-        ui.showArchived(toArchive.size(), scope.name().toLowerCase());
-        storage.save(tasks.asList());
+        storage.archive(toArchive, remaining);
+        if (scope == Scope.ALL) {
+            tasks.clear();
+        } else {
+            tasks.removeDone();
+        }
+        ui.showArchived(count, scope.name().toLowerCase());
     }
 }
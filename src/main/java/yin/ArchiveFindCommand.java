@@ -0,0 +1,33 @@
+package yin;
+
+/**
+ * Command that finds archived tasks with descriptions that contain a given keyword
+ * (case-insensitive). The archive is streamed from disk and never added to the task list.
+ */
+public class ArchiveFindCommand extends Command {
+    private final String word;
+
+    /**
+     * Creates an ArchiveFindCommand for the given keyword.
+     *
+     * @param word the keyword to search for
+     */
+    public ArchiveFindCommand(String word) {
+        this.word = word;
+    }
+
+    /**
+     * Executes the command, showing each match as soon as it is read from the archive.
+     *
+     * @param tasks the active task list (not used)
+     * @param ui the user interface to display matches
+     * @param storage the storage holding the archive
+     * @throws YinException if the archive cannot be read
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
+        ui.showArchiveSearch(word);
+        int count = storage.searchArchive(word, ui::showArchiveMatch);
+        ui.showArchiveSearchDone(count);
+    }
+}
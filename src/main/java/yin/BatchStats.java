@@ -0,0 +1,93 @@
+package yin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts and timing of a batch run by AppCore.runBatch. The time covers parsing and executing
+ * the commands and the single save at the end.
+ */
+public class BatchStats {
+    private long commands;
+    private long failed;
+    private long nanos;
+    /** One-based number of the line the batch stopped at, or 0 if it ran to the end. */
+    private long stoppedAt;
+
+    /**
+     * Counts one executed command, and whether it failed.
+     *
+     * @param isFailed true if the command was rejected with an error
+     */
+    void countCommand(boolean isFailed) {
+        commands++;
+        if (isFailed) {
+            failed++;
+        }
+    }
+
+    /**
+     * Records that the batch stopped early.
+     *
+     * @param lineNumber one-based number of the line it stopped at
+     */
+    void stopAt(long lineNumber) {
+        stoppedAt = lineNumber;
+    }
+
+    /**
+     * Sets the elapsed time of the batch.
+     *
+     * @param elapsedNanos elapsed time in nanoseconds
+     */
+    void setNanos(long elapsedNanos) {
+        nanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of commands executed, including failed ones.
+     *
+     * @return command count
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the number of commands that were rejected with an error.
+     *
+     * @return failed command count
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the line the batch stopped at, because of an error or an exit command.
+     *
+     * @return one-based line number, or 0 if the batch ran to the end of its input
+     */
+    public long getStoppedAt() {
+        return stoppedAt;
+    }
+
+    /**
+     * Returns the throughput of the batch.
+     *
+     * @return commands executed per second
+     */
+    public double getCommandsPerSecond() {
+        return nanos == 0 ? 0 : commands * 1e9 / nanos;
+    }
+
+    /**
+     * Returns a one-line summary of the batch.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return "Ran " + commands + " command(s), " + failed + " failed, in "
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms (" + Math.round(getCommandsPerSecond())
+                + " commands/s)" + (stoppedAt > 0 ? "; stopped at line " + stoppedAt : "");
+    }
+}
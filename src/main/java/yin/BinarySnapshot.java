@@ -0,0 +1,294 @@
+package yin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes the compact binary snapshot format:
+ * magic "YINB", a version byte, the epoch (long), the next id to hand out (long, from version 3
+ * on), the archive token (long, 0 for none, from version 4 on) and the task count (int), followed
+ * by one record per task. A record is a flags byte
+ * (type in bits 0-1, done in bit 2, whether timestamps carry nanoseconds in bit 3), the task's
+ * id as a varint (from version 2 on; version 1 files load with no ids), the description as a
+ * varint length and UTF-8 bytes, then for deadlines and events their timestamps as epoch
+ * seconds (long), each followed by its nanoseconds (int) if bit 3 is set.
+ * Timestamps are LocalDateTimes encoded at UTC, so no time zone is involved.
+ */
+final class BinarySnapshot {
+    /** Leading bytes that identify a binary snapshot. */
+    private static final byte[] MAGIC = {'Y', 'I', 'N', 'B'};
+    /** Current version of the format. */
+    private static final int VERSION = 4;
+    /** Oldest version that can still be read. */
+    private static final int MIN_VERSION = 1;
+    private static final int TODO = 0;
+    private static final int DEADLINE = 1;
+    private static final int EVENT = 2;
+    private static final int TYPE_MASK = 0x3;
+    private static final int DONE = 0x4;
+    private static final int HAS_NANOS = 0x8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Hidden constructor; this class should not be instantiated. */
+    private BinarySnapshot() {}
+
+    /** The header fields of a snapshot that Storage keeps. */
+    static final class Header {
+        final long epoch;
+        /** Next id to hand out, or -1 if the snapshot predates recording it. */
+        final long nextId;
+        /** Token of the latest archive the snapshot includes, or 0 if none. */
+        final long archiveToken;
+
+        /**
+         * Creates a header.
+         *
+         * @param epoch the epoch of the snapshot
+         * @param nextId the next id to hand out, or -1 if unknown
+         * @param archiveToken the archive token, or 0 if none
+         */
+        Header(long epoch, long nextId, long archiveToken) {
+            this.epoch = epoch;
+            this.nextId = nextId;
+            this.archiveToken = archiveToken;
+        }
+    }
+
+    /**
+     * Returns whether the given file starts with the binary snapshot magic.
+     *
+     * @param file the file to check
+     * @return true if the file is a binary snapshot
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Writes the tasks as a binary snapshot.
+     *
+     * @param file the file to write, replaced if it exists
+     * @param epoch the epoch of the snapshot
+     * @param nextId the next id to hand out, above those of all tasks ever saved
+     * @param archiveToken token of the latest archive written, or 0 if none
+     * @param tasks the tasks to write
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, long epoch, long nextId, long archiveToken, List<Task> tasks)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(epoch);
+            out.writeLong(nextId);
+            out.writeLong(archiveToken);
+            out.writeInt(tasks.size());
+            for (Task t : tasks) {
+                writeTask(out, t);
+            }
+        }
+    }
+
+    /**
+     * Writes a single task record.
+     *
+     * @param out the stream to write to
+     * @param t the task to write
+     * @throws IOException if writing fails
+     */
+    private static void writeTask(DataOutputStream out, Task t) throws IOException {
+        LocalDateTime[] times;
+        int type;
+        if (t instanceof Deadline) {
+            type = DEADLINE;
+            times = new LocalDateTime[] {((Deadline) t).getBy()};
+        } else if (t instanceof Event) {
+            type = EVENT;
+            times = new LocalDateTime[] {((Event) t).getFrom(), ((Event) t).getTo()};
+        } else {
+            type = TODO;
+            times = new LocalDateTime[0];
+        }
+        boolean hasNanos = false;
+        for (LocalDateTime time : times) {
+            hasNanos |= time.getNano() != 0;
+        }
+
+        int flags = type | (t.isDone() ? DONE : 0) | (hasNanos ? HAS_NANOS : 0);
+        out.writeByte(flags);
+        writeVarLong(out, t.getId());
+        byte[] desc = t.getDescription().getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, desc.length);
+        out.write(desc);
+        for (LocalDateTime time : times) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            if (hasNanos) {
+                out.writeInt(time.getNano());
+            }
+        }
+    }
+
+    /**
+     * Reads a binary snapshot. A file cut short, e.g. by a crash mid-write,
+     * yields the tasks that were read in full.
+     *
+     * @param file the file to read
+     * @param tasks receives the tasks, in file order
+     * @param stats collects timings and counts
+     * @return the epoch, next id and archive token stored in the snapshot
+     * @throws IOException if the file cannot be read or is not a supported binary snapshot
+     */
+    static Header read(Path file, List<Task> tasks, LoadStats stats) throws IOException {
+        long t0 = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) {
+                throw new IOException("Not a binary snapshot: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long epoch = in.readLong();
+            long nextId = version >= 3 ? in.readLong() : -1;
+            long archiveToken = version >= 4 ? in.readLong() : 0;
+            int count = in.readInt();
+            byte[] buffer = new byte[256];
+            try {
+                for (int i = 0; i < count; i++) {
+                    int flags = in.readUnsignedByte();
+                    long id = version >= 2 ? readVarLong(in) : 0;
+                    int length = readVarInt(in);
+                    if (length > buffer.length) {
+                        buffer = new byte[Math.max(length, buffer.length * 2)];
+                    }
+                    in.readFully(buffer, 0, length);
+                    String desc = new String(buffer, 0, length, StandardCharsets.UTF_8);
+                    boolean hasNanos = (flags & HAS_NANOS) != 0;
+                    Task t;
+                    switch (flags & TYPE_MASK) {
+                    case DEADLINE:
+                        t = new Deadline(desc, readTime(in, hasNanos));
+                        break;
+                    case EVENT:
+                        LocalDateTime from = readTime(in, hasNanos);
+                        t = new Event(desc, from, readTime(in, hasNanos));
+                        break;
+                    default:
+                        t = new Todo(desc);
+                        break;
+                    }
+                    if ((flags & DONE) != 0) {
+                        t.mark();
+                    }
+                    t.setId(id);
+                    tasks.add(t);
+                    stats.countLine(true);
+                }
+            } catch (EOFException e) {
+                System.err.println("Snapshot truncated after " + tasks.size() + " task(s)");
+            }
+            // Decoding is interleaved with buffered reads, so it is all reported as parse time.
+            stats.addParse(System.nanoTime() - t0);
+            return new Header(epoch, nextId, archiveToken);
+        }
+    }
+
+    /**
+     * Reads one timestamp.
+     *
+     * @param in the stream to read from
+     * @param hasNanos whether the timestamp is followed by its nanoseconds
+     * @return the decoded date-time
+     * @throws IOException if reading fails
+     */
+    private static LocalDateTime readTime(DataInputStream in, boolean hasNanos) throws IOException {
+        long seconds = in.readLong();
+        int nanos = hasNanos ? in.readInt() : 0;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Writes a non-negative int using 7 bits per byte, low bits first.
+     *
+     * @param out the stream to write to
+     * @param value the value to write
+     * @throws IOException if writing fails
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by writeVarInt.
+     *
+     * @param in the stream to read from
+     * @return the decoded value
+     * @throws IOException if reading fails or the value is malformed
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed length in snapshot");
+    }
+
+    /**
+     * Writes a non-negative long using 7 bits per byte, low bits first.
+     *
+     * @param out the stream to write to
+     * @param value the value to write
+     * @throws IOException if writing fails
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a long written by writeVarLong.
+     *
+     * @param in the stream to read from
+     * @return the decoded value
+     * @throws IOException if reading fails or the value is malformed
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed id in snapshot");
+    }
+}
@@ -0,0 +1,292 @@
+package yin;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of bits which, unlike java.util.BitSet, can remove a bit and close the gap.
+ *
+ * <p>Bits are held 64 to a long in blocks of BLOCK_BITS. Removing a bit only shifts the rest
+ * of its own block, and a Fenwick tree over the block sizes finds the block holding a position
+ * in O(log n), so get, set and remove are O(log n) rather than linear in the list. Blocks
+ * emptied by removals are merged away once they hold less than a quarter of their capacity.
+ * Counting is O(1), and finding set or clear bits works a word at a time, skipping blocks
+ * that have none.</p>
+ */
+final class BitList {
+    private static final int WORD_BITS = 64;
+    /** Words per block; a removal shifts at most this many words. */
+    private static final int BLOCK_WORDS = 64;
+    private static final int BLOCK_BITS = BLOCK_WORDS * WORD_BITS;
+
+    private long[][] blocks;
+    /** Number of bits in each block; bits at or past it are always clear. */
+    private int[] blockSizes;
+    /** Number of set bits in each block. */
+    private int[] blockOnes;
+    private int blockCount;
+    /** Fenwick tree over blockSizes, 1-based, with room for blocks.length blocks. */
+    private int[] sizeTree;
+    /** Number of bits in the list. */
+    private int size;
+    /** Number of set bits in the list. */
+    private int ones;
+
+    /** Creates an empty list. */
+    BitList() {
+        clear();
+    }
+
+    /**
+     * Returns the number of bits in the list.
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a bit.
+     *
+     * @param index zero-based position
+     * @return whether the bit is set
+     */
+    boolean get(int index) {
+        assert index >= 0 && index < size : "Bit index out of bounds";
+        long at = locate(index);
+        int offset = (int) at;
+        return (blocks[(int) (at >>> 32)][offset / WORD_BITS] & (1L << offset)) != 0;
+    }
+
+    /**
+     * Sets or clears a bit.
+     *
+     * @param index zero-based position
+     * @param value the new value
+     */
+    void set(int index, boolean value) {
+        assert index >= 0 && index < size : "Bit index out of bounds";
+        long at = locate(index);
+        int b = (int) (at >>> 32);
+        int offset = (int) at;
+        long[] words = blocks[b];
+        long mask = 1L << offset;
+        boolean isSet = (words[offset / WORD_BITS] & mask) != 0;
+        if (isSet == value) {
+            return;
+        }
+        words[offset / WORD_BITS] ^= mask;
+        int delta = value ? 1 : -1;
+        blockOnes[b] += delta;
+        ones += delta;
+    }
+
+    /**
+     * Appends a bit.
+     *
+     * @param value the bit
+     */
+    void add(boolean value) {
+        if (blockCount == 0 || blockSizes[blockCount - 1] == BLOCK_BITS) {
+            newBlock();
+        }
+        int b = blockCount - 1;
+        int offset = blockSizes[b]++;
+        addSize(b, 1);
+        size++;
+        if (value) {
+            blocks[b][offset / WORD_BITS] |= 1L << offset;
+            blockOnes[b]++;
+            ones++;
+        }
+    }
+
+    /**
+     * Removes a bit, moving every later bit down by one.
+     *
+     * @param index zero-based position
+     */
+    void remove(int index) {
+        assert index >= 0 && index < size : "Bit index out of bounds";
+        long at = locate(index);
+        int b = (int) (at >>> 32);
+        int offset = (int) at;
+        long[] words = blocks[b];
+        int word = offset / WORD_BITS;
+        if ((words[word] & (1L << offset)) != 0) {
+            blockOnes[b]--;
+            ones--;
+        }
+        int last = (blockSizes[b] - 1) / WORD_BITS;
+        long low = words[word] & ((1L << offset) - 1);
+        long high = words[word] >>> offset >>> 1 << offset;
+        words[word] = low | high;
+        for (int w = word + 1; w <= last; w++) {
+            words[w - 1] |= words[w] << (WORD_BITS - 1);
+            words[w] >>>= 1;
+        }
+        blockSizes[b]--;
+        addSize(b, -1);
+        size--;
+        if (blockCount > 1 && size < (long) blockCount * BLOCK_BITS / 4) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes all bits.
+     */
+    void clear() {
+        blocks = new long[1][];
+        blockSizes = new int[1];
+        blockOnes = new int[1];
+        blockCount = 0;
+        sizeTree = new int[2];
+        size = 0;
+        ones = 0;
+    }
+
+    /**
+     * Replaces the list with the given number of clear bits.
+     *
+     * @param newSize number of bits
+     */
+    void reset(int newSize) {
+        clear();
+        for (int left = newSize; left > 0; left -= BLOCK_BITS) {
+            newBlock();
+            blockSizes[blockCount - 1] = Math.min(left, BLOCK_BITS);
+        }
+        size = newSize;
+        rebuildTree();
+    }
+
+    /**
+     * Returns the number of set bits.
+     *
+     * @return the count
+     */
+    int cardinality() {
+        return ones;
+    }
+
+    /**
+     * Returns the position of the first bit with the given value at or after a position.
+     *
+     * @param from position to start from
+     * @param value the value to look for
+     * @return the position, or -1 if there is none before the end of the list
+     */
+    int next(int from, boolean value) {
+        if (from >= size) {
+            return -1;
+        }
+        long at = locate(from);
+        int b = (int) (at >>> 32);
+        int offset = (int) at;
+        int blockStart = from - offset;
+        for (; b < blockCount; b++) {
+            int bits = blockSizes[b];
+            boolean hasAny = value ? blockOnes[b] > 0 : blockOnes[b] < bits;
+            if (hasAny && offset < bits) {
+                long[] words = blocks[b];
+                int w = offset / WORD_BITS;
+                long word = (value ? words[w] : ~words[w]) & (-1L << offset);
+                while (true) {
+                    if (word != 0) {
+                        int bit = w * WORD_BITS + Long.numberOfTrailingZeros(word);
+                        if (bit < bits) {
+                            return blockStart + bit;
+                        }
+                        break;
+                    }
+                    if (++w * WORD_BITS >= bits) {
+                        break;
+                    }
+                    word = value ? words[w] : ~words[w];
+                }
+            }
+            blockStart += bits;
+            offset = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the block holding a position, skipping empty blocks.
+     *
+     * @param index zero-based position, less than the size
+     * @return the block number in the high 32 bits and the offset within it in the low 32 bits
+     */
+    private long locate(int index) {
+        int b = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(sizeTree.length - 1); step > 0; step >>= 1) {
+            int next = b + step;
+            if (next < sizeTree.length && sizeTree[next] <= remaining) {
+                b = next;
+                remaining -= sizeTree[next];
+            }
+        }
+        return ((long) b << 32) | remaining;
+    }
+
+    /**
+     * Adds to the size of a block in the Fenwick tree.
+     *
+     * @param b the block number
+     * @param delta the change in size
+     */
+    private void addSize(int b, int delta) {
+        for (int i = b + 1; i < sizeTree.length; i += i & -i) {
+            sizeTree[i] += delta;
+        }
+    }
+
+    /**
+     * Appends an empty block, growing the arrays and the tree if they are full.
+     */
+    private void newBlock() {
+        if (blockCount == blocks.length) {
+            int capacity = blocks.length * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            blockOnes = Arrays.copyOf(blockOnes, capacity);
+            rebuildTree();
+        }
+        blocks[blockCount] = new long[BLOCK_WORDS];
+        blockSizes[blockCount] = 0;
+        blockOnes[blockCount] = 0;
+        blockCount++;
+    }
+
+    /**
+     * Rebuilds the Fenwick tree from the block sizes in O(number of blocks).
+     */
+    private void rebuildTree() {
+        sizeTree = new int[blocks.length + 1];
+        for (int i = 1; i <= blockCount; i++) {
+            sizeTree[i] += blockSizes[i - 1];
+            int parent = i + (i & -i);
+            if (parent < sizeTree.length) {
+                sizeTree[parent] += sizeTree[i];
+            }
+        }
+    }
+
+    /**
+     * Packs the bits into as few blocks as they fit in. Only runs once removals have left
+     * three quarters of the capacity unused, so its O(n) cost is spread over those removals.
+     */
+    private void compact() {
+        long[][] oldBlocks = blocks;
+        int[] oldSizes = blockSizes;
+        int oldCount = blockCount;
+        clear();
+        for (int b = 0; b < oldCount; b++) {
+            for (int i = 0; i < oldSizes[b]; i++) {
+                add((oldBlocks[b][i / WORD_BITS] & (1L << i)) != 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package yin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a large data file on several cores.
+ * The file is cut into chunks whose boundaries fall just after a newline, so every line
+ * belongs to exactly one chunk and no UTF-8 sequence is split. Each chunk is read with a
+ * positional read and parsed on the common ForkJoin pool, and the per-chunk results are
+ * concatenated in file order, so task positions are the same as with a sequential load.
+ */
+final class ChunkedLoader implements Closeable {
+    /** Smallest chunk worth handing to a worker. */
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    /** Chunks per worker, so a slow chunk does not leave the other workers idle. */
+    private static final int CHUNKS_PER_WORKER = 4;
+    /** How far to read at a time when looking for the end of a line. */
+    private static final int SCAN_WINDOW = 4096;
+
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * Opens the given file for chunked reading.
+     *
+     * @param file the data file
+     * @throws IOException if the file cannot be opened
+     */
+    ChunkedLoader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Returns the position just after the first newline at or after the given position,
+     * or the file size if there is none.
+     *
+     * @param position where to start looking
+     * @return start of the next line
+     * @throws IOException if the file cannot be read
+     */
+    long nextLineStart(long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        while (position < size) {
+            window.clear();
+            int n = channel.read(window, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /**
+     * Decodes the bytes in [start, end) as UTF-8.
+     *
+     * @param start first byte to read
+     * @param end byte just past the range
+     * @return the decoded text
+     * @throws IOException if the file cannot be read
+     */
+    String read(long start, long end) throws IOException {
+        assert end - start <= Integer.MAX_VALUE : "Chunk too large";
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, start + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses every line from the given position to the end of the file, in parallel.
+     *
+     * @param start byte position of the first line to parse
+     * @param stats collects read and parse time summed over all workers, and line counts
+     * @return the parsed tasks in file order
+     * @throws IOException if the file cannot be read
+     */
+    List<Task> parseFrom(long start, LoadStats stats) throws IOException {
+        int workers = ForkJoinPool.getCommonPoolParallelism();
+        long chunkBytes = Math.max(MIN_CHUNK_BYTES, (size - start) / ((long) workers * CHUNKS_PER_WORKER));
+        chunkBytes = Math.min(chunkBytes, Integer.MAX_VALUE);
+
+        List<ChunkTask> chunks = new ArrayList<>();
+        long chunkStart = start;
+        while (chunkStart < size) {
+            long chunkEnd = nextLineStart(Math.min(size, chunkStart + chunkBytes) - 1);
+            chunks.add(new ChunkTask(chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+
+        try {
+            ForkJoinTask.invokeAll(chunks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        int total = 0;
+        for (ChunkTask chunk : chunks) {
+            total += chunk.join().size();
+        }
+        List<Task> tasks = new ArrayList<>(total);
+        for (ChunkTask chunk : chunks) {
+            tasks.addAll(chunk.join());
+            stats.add(chunk.stats);
+        }
+        return tasks;
+    }
+
+    /**
+     * Closes the underlying file channel.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads and parses the lines of one newline-aligned chunk.
+     */
+    private class ChunkTask extends RecursiveTask<List<Task>> {
+        /** ForkJoinTask is Serializable, but chunk tasks are never serialised. */
+        private static final long serialVersionUID = 1L;
+        private final long start;
+        private final long end;
+        private final LoadStats stats = new LoadStats();
+
+        ChunkTask(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Task> compute() {
+            long t0 = System.nanoTime();
+            String text;
+            try {
+                text = read(start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            long t1 = System.nanoTime();
+            stats.addRead(t1 - t0);
+
+            List<Task> tasks = new ArrayList<>();
+            int lineStart = 0;
+            int length = text.length();
+            while (lineStart < length) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = length;
+                }
+                // A '\r' before the newline is trimmed by the parser along with other blanks.
+                Task t = TaskFormat.parse(text, lineStart, lineEnd);
+                stats.countLine(t != null);
+                if (t != null) {
+                    tasks.add(t);
+                }
+                lineStart = lineEnd + 1;
+            }
+            stats.addParse(System.nanoTime() - t1);
+            return tasks;
+        }
+    }
+}
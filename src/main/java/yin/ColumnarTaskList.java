@@ -0,0 +1,575 @@
+package yin;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A list of tasks held column by column in primitive arrays instead of as objects: a byte of
+ * type and done flags, the id and sequence number, timestamps as UTC epoch seconds (with
+ * nanoseconds in separate columns, allocated only once a timestamp needs them), and the
+ * description as a slice of one shared UTF-8 byte pool. A task costs a few dozen bytes plus
+ * its description, against a few hundred as Task, String and LocalDateTime objects.
+ *
+ * <p>get(int) decodes a fresh Task view of a row; nothing keeps the view afterwards, so
+ * changing a view does not change the row. TaskList writes changes back through
+ * setDone(int, boolean), and answers date and deadline queries with scans over the
+ * primitive columns rather than keeping object indexes that would pin every view.</p>
+ *
+ * <p>Deleting a task only flags its row, and a Fenwick tree over the rows that are still live
+ * maps positions to rows, so get and delete by position take O(log n) instead of shifting
+ * every column. Deleted rows are squeezed out once they outnumber the live ones.</p>
+ *
+ * <p>Rows must be appended in increasing sequence order, as TaskList does, so that a row can
+ * be found from its id through a primitive id-to-sequence map and a binary search.</p>
+ */
+final class ColumnarTaskList extends AbstractList<Task> {
+    private static final int TODO = 0;
+    private static final int DEADLINE = 1;
+    private static final int EVENT = 2;
+    private static final int TYPE_MASK = 0x3;
+    private static final int DONE = 0x4;
+    /** Flag of a row whose task was deleted. */
+    private static final int DELETED = 0x8;
+    private static final int MIN_CAPACITY = 16;
+    private static final long SECONDS_PER_DAY = 86_400;
+    /** Pool size in bytes below which deleted descriptions are never compacted away. */
+    private static final int MIN_COMPACT_BYTES = 1 << 16;
+
+    /** Number of live tasks. */
+    private int size = 0;
+    /** Number of rows in use, live or deleted. */
+    private int rows = 0;
+    /** Fenwick tree counting live rows, one-based; only consulted once a row is deleted. */
+    private int[] live = new int[MIN_CAPACITY + 1];
+    private byte[] flags = new byte[MIN_CAPACITY];
+    private long[] ids = new long[MIN_CAPACITY];
+    private long[] sequences = new long[MIN_CAPACITY];
+    /** Deadline due time or event start, in epoch seconds. */
+    private long[] starts = new long[MIN_CAPACITY];
+    /** Event end, in epoch seconds. */
+    private long[] ends = new long[MIN_CAPACITY];
+    /** Nanoseconds of starts and ends; null while every timestamp is a whole second. */
+    private int[] startNanos = null;
+    private int[] endNanos = null;
+    private int[] descOffsets = new int[MIN_CAPACITY];
+    private int[] descLengths = new int[MIN_CAPACITY];
+    /** UTF-8 bytes of every description, in the order they were written. */
+    private byte[] pool = new byte[MIN_CAPACITY * 16];
+    private int poolUsed = 0;
+    /** Bytes of the pool still referred to by a row. */
+    private int poolLive = 0;
+    /** Sequence number of the row holding each id. */
+    private final LongLongMap sequenceById = new LongLongMap();
+
+    /** Creates an empty list. */
+    ColumnarTaskList() {}
+
+    /**
+     * Creates a list holding the given tasks in iteration order.
+     *
+     * @param tasks the initial tasks, in increasing sequence order
+     */
+    ColumnarTaskList(Collection<? extends Task> tasks) {
+        grow(tasks.size());
+        for (Task t : tasks) {
+            add(t);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        return decode(row(index));
+    }
+
+    @Override
+    public Task set(int index, Task element) {
+        checkIndex(index, size);
+        int row = row(index);
+        Task old = decode(row);
+        release(row);
+        write(row, element);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Task element) {
+        checkIndex(index, size + 1);
+        if (index < size) {
+            // Only appends are cheap; TaskList never inserts in the middle.
+            compact();
+            grow(rows + 1);
+            shift(index, index + 1, rows - index);
+            rows++;
+            size++;
+            write(index, element);
+            rebuildLive();
+        } else {
+            grow(rows + 1);
+            write(rows, element);
+            addLive(rows, 1);
+            rows++;
+            size++;
+        }
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        checkIndex(index, size);
+        int row = row(index);
+        Task old = decode(row);
+        delete(row);
+        modCount++;
+        compactIfSparse();
+        return old;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            delete(row(i));
+        }
+        modCount++;
+        compactIfSparse();
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        rows = 0;
+        poolUsed = 0;
+        poolLive = 0;
+        Arrays.fill(live, 0);
+        sequenceById.clear();
+        modCount++;
+    }
+
+    /**
+     * Decodes the task in a row.
+     *
+     * @param row the row
+     * @return a fresh view of the task
+     */
+    private Task decode(int row) {
+        String desc = new String(pool, descOffsets[row], descLengths[row], StandardCharsets.UTF_8);
+        Task t;
+        switch (flags[row] & TYPE_MASK) {
+        case DEADLINE:
+            t = new Deadline(desc, time(starts, startNanos, row));
+            break;
+        case EVENT:
+            t = new Event(desc, time(starts, startNanos, row), time(ends, endNanos, row));
+            break;
+        default:
+            t = new Todo(desc);
+            break;
+        }
+        if ((flags[row] & DONE) != 0) {
+            t.mark();
+        }
+        t.setId(ids[row]);
+        t.setSequence(sequences[row]);
+        return t;
+    }
+
+    /**
+     * Returns the row holding the task with the given id.
+     *
+     * @param id the task's id
+     * @return the zero-based row, or -1 if no task has that id
+     */
+    int indexOfId(long id) {
+        long sequence = sequenceById.get(id, -1);
+        if (sequence < 0) {
+            return -1;
+        }
+        int row = Arrays.binarySearch(sequences, 0, rows, sequence);
+        return row >= 0 ? rank(row) : -1;
+    }
+
+    /**
+     * Returns whether a task with the given id is in the list.
+     *
+     * @param id the id
+     * @return true if a row holds that id
+     */
+    boolean containsId(long id) {
+        return sequenceById.containsKey(id);
+    }
+
+    /**
+     * Marks or unmarks the task in a row.
+     *
+     * @param index zero-based row
+     * @param isDone the new status
+     */
+    void setDone(int index, boolean isDone) {
+        checkIndex(index, size);
+        int row = row(index);
+        flags[row] = (byte) (isDone ? flags[row] | DONE : flags[row] & ~DONE);
+    }
+
+    /**
+     * Removes every done task in a single pass over the columns, keeping the rest in order.
+     *
+     * @return views of the removed tasks, in their original order
+     */
+    List<Task> removeDone() {
+        List<Task> removed = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & (DONE | DELETED)) == DONE) {
+                removed.add(decode(i));
+                delete(i);
+            }
+        }
+        modCount++;
+        compact();
+        return removed;
+    }
+
+    /**
+     * Returns the tasks that occur on at least one day in the given range, in the sense of
+     * Schedulable#occursOn(LocalDate).
+     *
+     * @param fromDay first day of the range, as an epoch day
+     * @param toDay last day of the range, inclusive
+     * @return the tasks in list order
+     */
+    List<Task> occurringBetween(long fromDay, long toDay) {
+        List<Task> out = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            int type = flags[i] & TYPE_MASK;
+            if (type == TODO || (flags[i] & DELETED) != 0) {
+                continue;
+            }
+            long start = Math.floorDiv(starts[i], SECONDS_PER_DAY);
+            long end = type == EVENT ? Math.floorDiv(ends[i], SECONDS_PER_DAY) : start;
+            // An event that ends before it starts occurs on no day.
+            if (start <= end && start <= toDay && end >= fromDay) {
+                out.add(decode(i));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns undone deadlines in order of due time (ties in list order), either those already
+     * past due or the next ones still to come.
+     *
+     * @param now the current time
+     * @param isOverdue true for deadlines due before now, false for those due at or after now
+     * @param limit the most deadlines to return
+     * @return the deadlines, soonest first
+     */
+    List<Task> due(LocalDateTime now, boolean isOverdue, int limit) {
+        long nowSeconds = now.toEpochSecond(ZoneOffset.UTC);
+        int nowNanos = now.getNano();
+        Comparator<Integer> byDue = Comparator.<Integer>comparingLong(i -> starts[i])
+                .thenComparingInt(i -> nanos(startNanos, i))
+                .thenComparingInt(i -> i);
+        // Keeps the limit soonest rows seen so far, latest on top.
+        PriorityQueue<Integer> soonest = new PriorityQueue<>(byDue.reversed());
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & (TYPE_MASK | DONE | DELETED)) != DEADLINE) {
+                continue;
+            }
+            int c = Long.compare(starts[i], nowSeconds);
+            boolean isPast = c < 0 || c == 0 && nanos(startNanos, i) < nowNanos;
+            if (isPast == isOverdue) {
+                soonest.add(i);
+                if (soonest.size() > limit) {
+                    soonest.poll();
+                }
+            }
+        }
+        Integer[] found = soonest.toArray(new Integer[0]);
+        Arrays.sort(found, byDue);
+        List<Task> out = new ArrayList<>(found.length);
+        for (int row : found) {
+            out.add(decode(row));
+        }
+        return out;
+    }
+
+    /**
+     * Encodes a task into a row whose previous contents have been released.
+     *
+     * @param index zero-based row
+     * @param t the task
+     */
+    private void write(int index, Task t) {
+        int type = TODO;
+        if (t instanceof Deadline) {
+            type = DEADLINE;
+            setTime(index, ((Deadline) t).getBy(), false);
+        } else if (t instanceof Event) {
+            type = EVENT;
+            setTime(index, ((Event) t).getFrom(), false);
+            setTime(index, ((Event) t).getTo(), true);
+        }
+        flags[index] = (byte) (type | (t.isDone() ? DONE : 0));
+        ids[index] = t.getId();
+        sequences[index] = t.getSequence();
+        if (t.getId() > 0) {
+            sequenceById.put(t.getId(), t.getSequence());
+        }
+
+        byte[] desc = t.getDescription().getBytes(StandardCharsets.UTF_8);
+        if (poolUsed + desc.length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolUsed + desc.length, pool.length * 3 / 2));
+        }
+        System.arraycopy(desc, 0, pool, poolUsed, desc.length);
+        descOffsets[index] = poolUsed;
+        descLengths[index] = desc.length;
+        poolUsed += desc.length;
+        poolLive += desc.length;
+    }
+
+    /**
+     * Stores one timestamp of a row, allocating the nanosecond columns the first time one is needed.
+     *
+     * @param index zero-based row
+     * @param time the timestamp
+     * @param isEnd true for an event's end, false for a due time or start
+     */
+    private void setTime(int index, LocalDateTime time, boolean isEnd) {
+        if (time.getNano() != 0 && startNanos == null) {
+            startNanos = new int[flags.length];
+            endNanos = new int[flags.length];
+        }
+        (isEnd ? ends : starts)[index] = time.toEpochSecond(ZoneOffset.UTC);
+        if (startNanos != null) {
+            (isEnd ? endNanos : startNanos)[index] = time.getNano();
+        }
+    }
+
+    /**
+     * Flags a row as deleted and forgets what it refers to.
+     *
+     * @param row the row, live
+     */
+    private void delete(int row) {
+        release(row);
+        flags[row] |= DELETED;
+        addLive(row, -1);
+        size--;
+    }
+
+    /**
+     * Forgets what a row refers to outside its own slots: its id and its description bytes.
+     *
+     * @param index zero-based row
+     */
+    private void release(int index) {
+        if (sequenceById.get(ids[index], -1) == sequences[index]) {
+            sequenceById.remove(ids[index]);
+        }
+        poolLive -= descLengths[index];
+    }
+
+    /**
+     * Moves rows within every column.
+     *
+     * @param from first row to move
+     * @param to where the first row ends up
+     * @param count number of rows to move
+     */
+    private void shift(int from, int to, int count) {
+        System.arraycopy(flags, from, flags, to, count);
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(sequences, from, sequences, to, count);
+        System.arraycopy(starts, from, starts, to, count);
+        System.arraycopy(ends, from, ends, to, count);
+        System.arraycopy(descOffsets, from, descOffsets, to, count);
+        System.arraycopy(descLengths, from, descLengths, to, count);
+        if (startNanos != null) {
+            System.arraycopy(startNanos, from, startNanos, to, count);
+            System.arraycopy(endNanos, from, endNanos, to, count);
+        }
+    }
+
+    /**
+     * Returns the row holding the task at a position.
+     *
+     * @param index zero-based position among live tasks
+     * @return the row
+     */
+    private int row(int index) {
+        if (size == rows) {
+            return index;
+        }
+        // Descend the Fenwick tree to the row with index live rows before it.
+        int row = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(live.length - 1); step > 0; step >>= 1) {
+            int next = row + step;
+            if (next < live.length && live[next] < remaining) {
+                row = next;
+                remaining -= live[next];
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns the position of the task in a live row.
+     *
+     * @param row the row
+     * @return zero-based position among live tasks
+     */
+    private int rank(int row) {
+        if (size == rows) {
+            return row;
+        }
+        int before = 0;
+        for (int i = row; i > 0; i -= i & -i) {
+            before += live[i];
+        }
+        return before;
+    }
+
+    /**
+     * Adds to the live count of a row in the Fenwick tree.
+     *
+     * @param row the row
+     * @param delta 1 for a new row, -1 for a deleted one
+     */
+    private void addLive(int row, int delta) {
+        for (int i = row + 1; i < live.length; i += i & -i) {
+            live[i] += delta;
+        }
+    }
+
+    /** Rebuilds the Fenwick tree from the row flags in O(n). */
+    private void rebuildLive() {
+        Arrays.fill(live, 0);
+        for (int i = 1; i < live.length; i++) {
+            if (i <= rows && (flags[i - 1] & DELETED) == 0) {
+                live[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < live.length) {
+                live[parent] += live[i];
+            }
+        }
+    }
+
+    /** Squeezes deleted rows out once they outnumber the live ones, so each delete costs O(1) amortised. */
+    private void compactIfSparse() {
+        if (rows - size > Math.max(size, MIN_CAPACITY)) {
+            compact();
+        }
+    }
+
+    /** Moves the live rows together, dropping deleted ones, and tidies the description pool. */
+    private void compact() {
+        if (rows != size) {
+            int kept = 0;
+            for (int i = 0; i < rows; i++) {
+                if ((flags[i] & DELETED) == 0) {
+                    if (kept != i) {
+                        shift(i, kept, 1);
+                    }
+                    kept++;
+                }
+            }
+            rows = kept;
+            rebuildLive();
+        }
+        compactPool();
+    }
+
+    /**
+     * Makes room in every column for at least the given number of rows.
+     *
+     * @param capacity rows needed
+     */
+    private void grow(int capacity) {
+        if (capacity <= flags.length) {
+            return;
+        }
+        int n = Math.max(capacity, flags.length * 3 / 2);
+        flags = Arrays.copyOf(flags, n);
+        ids = Arrays.copyOf(ids, n);
+        sequences = Arrays.copyOf(sequences, n);
+        starts = Arrays.copyOf(starts, n);
+        ends = Arrays.copyOf(ends, n);
+        descOffsets = Arrays.copyOf(descOffsets, n);
+        descLengths = Arrays.copyOf(descLengths, n);
+        if (startNanos != null) {
+            startNanos = Arrays.copyOf(startNanos, n);
+            endNanos = Arrays.copyOf(endNanos, n);
+        }
+        live = new int[n + 1];
+        rebuildLive();
+    }
+
+    /** Copies the live descriptions into a fresh pool once most of the old one is garbage. */
+    private void compactPool() {
+        if (poolUsed < MIN_COMPACT_BYTES || poolLive * 2 > poolUsed) {
+            return;
+        }
+        byte[] fresh = new byte[Math.max(MIN_CAPACITY, poolLive * 3 / 2)];
+        int used = 0;
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & DELETED) != 0) {
+                continue;
+            }
+            System.arraycopy(pool, descOffsets[i], fresh, used, descLengths[i]);
+            descOffsets[i] = used;
+            used += descLengths[i];
+        }
+        pool = fresh;
+        poolUsed = used;
+    }
+
+    /**
+     * Decodes one timestamp of a row.
+     *
+     * @param seconds the seconds column
+     * @param nanos the matching nanoseconds column, possibly null
+     * @param index zero-based row
+     * @return the timestamp
+     */
+    private static LocalDateTime time(long[] seconds, int[] nanos, int index) {
+        return LocalDateTime.ofEpochSecond(seconds[index], nanos(nanos, index), ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the nanoseconds of a row's timestamp.
+     *
+     * @param nanos the nanoseconds column, possibly null
+     * @param index zero-based row
+     * @return the nanoseconds, 0 if the column is not allocated
+     */
+    private static int nanos(int[] nanos, int index) {
+        return nanos == null ? 0 : nanos[index];
+    }
+
+    /**
+     * Checks that an index lies in [0, bound).
+     *
+     * @param index the index
+     * @param bound the exclusive upper bound
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    private void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
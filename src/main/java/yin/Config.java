@@ -0,0 +1,123 @@
+package yin;
+
+import java.util.List;
+
+/**
+ * Reads optional tuning settings from Java system properties (e.g. -Dyin.writeBehindMillis=50)
+ * and applies them when wiring up the application.
+ * Every setting has a default that keeps the original behaviour.
+ */
+public final class Config {
+    /** Quiet period in milliseconds before queued writes are flushed; 0 writes synchronously. */
+    static final String WRITE_BEHIND_MILLIS = "yin.writeBehindMillis";
+    /** Longest time in milliseconds a queued write may wait under continuous input. */
+    static final String MAX_WRITE_DELAY_MILLIS = "yin.maxWriteDelayMillis";
+    /** Whether to print per-phase load timings to standard error. */
+    static final String PRINT_LOAD_STATS = "yin.printLoadStats";
+    /** Snapshot format to write: "text" (default) or "binary". */
+    static final String STORAGE_FORMAT = "yin.storageFormat";
+    /** Fsync level for writes: "none" (default), "file" or "directory". */
+    static final String DURABILITY = "yin.durability";
+    /** Data file size in bytes from which loading is spread across cores. */
+    static final String PARALLEL_LOAD_BYTES = "yin.parallelLoadBytes";
+    /** Structure that holds the task list in memory: "array" (default), "tree" or "columnar". */
+    static final String TASK_LIST = "yin.taskList";
+
+    /** Hidden constructor; this class should not be instantiated. */
+    private Config() {}
+
+    /**
+     * Creates a storage for the given data file, configured from system properties.
+     *
+     * @param relativePath path to the data file, relative to the working directory
+     * @return the configured storage
+     */
+    public static Storage createStorage(String relativePath) {
+        Storage storage = new Storage(relativePath);
+        storage.setReportingLoadStats(Boolean.getBoolean(PRINT_LOAD_STATS));
+        storage.setFormat(parseFormat(System.getProperty(STORAGE_FORMAT, "text")));
+        storage.setDurability(parseDurability(System.getProperty(DURABILITY, "none")));
+        storage.setParallelLoadThreshold(getLong(PARALLEL_LOAD_BYTES, Storage.DEFAULT_PARALLEL_LOAD_BYTES));
+        long debounce = getLong(WRITE_BEHIND_MILLIS, 0);
+        if (debounce > 0) {
+            long maxDelay = getLong(MAX_WRITE_DELAY_MILLIS, Math.max(1000, debounce));
+            storage.enableWriteBehind(debounce, Math.max(debounce, maxDelay));
+        }
+        return storage;
+    }
+
+    /**
+     * Creates a task list holding the loaded tasks, in the structure chosen by system properties.
+     *
+     * @param loaded the tasks read from storage
+     * @return the configured task list
+     */
+    public static TaskList createTaskList(List<Task> loaded) {
+        return new TaskList(loaded, parseBacking(System.getProperty(TASK_LIST, "array")));
+    }
+
+    /**
+     * Parses a task list backing name, falling back to an array for unknown names.
+     *
+     * @param name "array", "tree" or "columnar", in any case
+     * @return the matching backing
+     */
+    static TaskList.Backing parseBacking(String name) {
+        try {
+            return TaskList.Backing.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring unknown task list backing: " + name);
+            return TaskList.Backing.ARRAY;
+        }
+    }
+
+    /**
+     * Parses a snapshot format name, falling back to text for unknown names.
+     *
+     * @param name "text" or "binary", in any case
+     * @return the matching format
+     */
+    static Storage.Format parseFormat(String name) {
+        try {
+            return Storage.Format.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring unknown storage format: " + name);
+            return Storage.Format.TEXT;
+        }
+    }
+
+    /**
+     * Parses a durability level name, falling back to no fsync for unknown names.
+     *
+     * @param name "none", "file" or "directory", in any case
+     * @return the matching durability level
+     */
+    static Durability parseDurability(String name) {
+        try {
+            return Durability.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring unknown durability level: " + name);
+            return Durability.NONE;
+        }
+    }
+
+    /**
+     * Returns a numeric system property, or the fallback if it is unset or not a number.
+     *
+     * @param key the property name
+     * @param fallback value to use when the property is missing or invalid
+     * @return the property value
+     */
+    static long getLong(String key, long fallback) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid " + key + ": " + value);
+            return fallback;
+        }
+    }
+}
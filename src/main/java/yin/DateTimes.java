@@ -3,6 +3,8 @@ package yin;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.List;
@@ -11,6 +13,11 @@ import java.util.List;
  * Utility class for parsing and formatting LocalDateTime objects used in tasks.
  * Supports multiple flexible input formats for parsing,
  * and provides distinct formatters for user display and storage serialisation.
+ * Input that is plainly valid in one of the supported shapes is read digit by digit;
+ * the formatters only see what that fast path cannot vouch for.
+ *
+ * <p>Storage has its own codec, formatStorage(LocalDateTime) and parseStorage(CharSequence, int, int),
+ * which writes and reads the fixed-width "yyyy-MM-ddTHH:mm:ss[.fraction]" layout directly.</p>
  */
 public class DateTimes {
 
@@ -37,9 +44,11 @@ public class DateTimes {
 
     /**
      * Parses a user-provided string into a LocalDateTime.
-     * Tries each of the accepted input formats. If only a date is provided,
-     * it defaults the time to midnight.
-     * If none of the formats match, it falls back to LocalDateTime.parse(string).
+     * Accepts "yyyy-MM-dd HHmm", "yyyy-MM-dd", "d/M/yyyy HHmm", "d/M/yyyy" and ISO local
+     * date-times. If only a date is provided, it defaults the time to midnight.
+     * Well-formed, in-range input is recognised without the formatters; anything else,
+     * including the days and times the formatters resolve leniently (e.g. "2019-02-30",
+     * which becomes Feb 28), goes through parseWithFormatters(String) unchanged.
      *
      * @param text the input string
      * @return parsed date-time
@@ -47,7 +56,20 @@ public class DateTimes {
      */
     public static LocalDateTime parseFlexible(String text) throws DateTimeParseException {
         String s = text.trim();
+        LocalDateTime fast = parseFast(s);
+        return fast != null ? fast : parseWithFormatters(s);
+    }
 
+    /**
+     * Parses a trimmed string by trying each of the accepted input formats in turn, as a
+     * date-time and then as a date at midnight, falling back to LocalDateTime.parse(string).
+     * Every failed attempt costs an exception, so this is only the slow path.
+     *
+     * @param s the trimmed input string
+     * @return parsed date-time
+     * @throws DateTimeParseException if parsing fails
+     */
+    static LocalDateTime parseWithFormatters(String s) throws DateTimeParseException {
         for (DateTimeFormatter f : INPUTS) {
             try {
                 return LocalDateTime.parse(s, f);
@@ -66,6 +88,134 @@ public class DateTimes {
         return LocalDateTime.parse(s);
     }
 
+    /**
+     * Recognises the supported shapes when they are unambiguously valid: ASCII digits in the
+     * exact widths the formatters expect, a year from 1 to 9999, a day that exists in its month,
+     * an hour from 0 to 23 and minutes and seconds from 0 to 59.
+     *
+     * @param s the trimmed input string
+     * @return the date-time, or null if the formatters must decide
+     */
+    private static LocalDateTime parseFast(String s) {
+        int n = s.length();
+        if (n >= 10 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+            int year = digits(s, 0, 4);
+            int month = digits(s, 5, 7);
+            int day = digits(s, 8, 10);
+            if (n == 10) {
+                return at(year, month, day, 0, 0, 0, 0);
+            }
+            if (n == 15 && s.charAt(10) == ' ') {
+                return at(year, month, day, digits(s, 11, 13), digits(s, 13, 15), 0, 0);
+            }
+            if (n >= 16 && s.charAt(10) == 'T' && s.charAt(13) == ':') {
+                return atIsoTime(s, 0, n, year, month, day);
+            }
+            return null;
+        }
+        int firstSlash = s.indexOf('/');
+        int secondSlash = firstSlash < 0 ? -1 : s.indexOf('/', firstSlash + 1);
+        if (firstSlash < 1 || firstSlash > 2 || secondSlash - firstSlash < 2 || secondSlash - firstSlash > 3) {
+            return null;
+        }
+        int day = digits(s, 0, firstSlash);
+        int month = digits(s, firstSlash + 1, secondSlash);
+        int yearEnd = secondSlash + 5;
+        if (n == yearEnd) {
+            return at(digits(s, secondSlash + 1, yearEnd), month, day, 0, 0, 0, 0);
+        }
+        if (n == yearEnd + 5 && s.charAt(yearEnd) == ' ') {
+            return at(digits(s, secondSlash + 1, yearEnd), month, day,
+                    digits(s, yearEnd + 1, yearEnd + 3), digits(s, yearEnd + 3, yearEnd + 5), 0, 0);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the time part of an ISO local date-time, "HH:mm", "HH:mm:ss" or "HH:mm:ss.fraction"
+     * with one to nine fraction digits, which starts 11 characters into the date-time.
+     *
+     * @param s the characters to read from
+     * @param start index of the first character of the date-time
+     * @param end index just past the date-time
+     * @param year the year already read
+     * @param month the month already read
+     * @param day the day already read
+     * @return the date-time, or null if the formatters must decide
+     */
+    private static LocalDateTime atIsoTime(CharSequence s, int start, int end, int year, int month, int day) {
+        int n = end - start;
+        int hour = digits(s, start + 11, start + 13);
+        int minute = digits(s, start + 14, start + 16);
+        if (n == 16) {
+            return at(year, month, day, hour, minute, 0, 0);
+        }
+        if (n < 19 || s.charAt(start + 16) != ':') {
+            return null;
+        }
+        int second = digits(s, start + 17, start + 19);
+        if (n == 19) {
+            return at(year, month, day, hour, minute, second, 0);
+        }
+        if (n < 21 || n > 29 || s.charAt(start + 19) != '.') {
+            return null;
+        }
+        int fraction = digits(s, start + 20, end);
+        if (fraction < 0) {
+            return null;
+        }
+        for (int i = n; i < 29; i++) {
+            fraction *= 10;
+        }
+        return at(year, month, day, hour, minute, second, fraction);
+    }
+
+    /**
+     * Builds a date-time if every field is in range; -1 marks a field that was not all digits.
+     *
+     * @param year the year
+     * @param month the month
+     * @param day the day of month
+     * @param hour the hour of day
+     * @param minute the minute
+     * @param second the second
+     * @param nano the nanosecond
+     * @return the date-time, or null if any field is out of range
+     */
+    private static LocalDateTime at(int year, int month, int day, int hour, int minute, int second, int nano) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59 || nano < 0) {
+            return null;
+        }
+        if (day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    /**
+     * Reads a run of ASCII digits as a number.
+     *
+     * @param s the string
+     * @param from index of the first digit
+     * @param to index after the last digit
+     * @return the number, or -1 if the range is empty or holds anything but digits
+     */
+    private static int digits(CharSequence s, int from, int to) {
+        if (from >= to || to > s.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
     /**
      * Formats a date-time for user display.
      * If the time is exactly midnight, only the date is shown.
@@ -82,12 +232,77 @@ public class DateTimes {
     }
 
     /**
-     * Formats a date-time for persistent storage.
+     * Formats a date-time for persistent storage as "yyyy-MM-ddTHH:mm:ss", followed by the
+     * fraction of a second without trailing zeros if there is one. The digits are written
+     * directly; the result is the same as ISO_LOCAL_DATE_TIME gives, which is also used for
+     * years outside 0 to 9999.
      *
      * @param dt the date-time to format
      * @return ISO-8601 formatted string
      */
     public static String formatStorage(LocalDateTime dt) {
-        return dt.format(STORAGE);
+        int year = dt.getYear();
+        if (year < 0 || year > 9999) {
+            return dt.format(STORAGE);
+        }
+        int nano = dt.getNano();
+        char[] out = new char[nano == 0 ? 19 : 29];
+        putDigits(out, 0, 4, year);
+        out[4] = '-';
+        putDigits(out, 5, 7, dt.getMonthValue());
+        out[7] = '-';
+        putDigits(out, 8, 10, dt.getDayOfMonth());
+        out[10] = 'T';
+        putDigits(out, 11, 13, dt.getHour());
+        out[13] = ':';
+        putDigits(out, 14, 16, dt.getMinute());
+        out[16] = ':';
+        putDigits(out, 17, 19, dt.getSecond());
+        if (nano == 0) {
+            return new String(out);
+        }
+        out[19] = '.';
+        putDigits(out, 20, 29, nano);
+        int end = 29;
+        while (out[end - 1] == '0') {
+            end--;
+        }
+        return new String(out, 0, end);
+    }
+
+    /**
+     * Parses a date-time written by formatStorage(LocalDateTime), or any ISO local date-time
+     * with a four-digit year, from a slice of characters without copying it. The slice must
+     * hold nothing else, not even spaces.
+     *
+     * @param s the characters to read from
+     * @param start index of the first character of the date-time
+     * @param end index just past the date-time
+     * @return the date-time, or null if the slice is not a valid date-time in that layout
+     */
+    public static LocalDateTime parseStorage(CharSequence s, int start, int end) {
+        if (end - start < 16 || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-'
+                || s.charAt(start + 10) != 'T' || s.charAt(start + 13) != ':') {
+            return null;
+        }
+        int year = digits(s, start, start + 4);
+        int month = digits(s, start + 5, start + 7);
+        int day = digits(s, start + 8, start + 10);
+        return atIsoTime(s, start, end, year, month, day);
+    }
+
+    /**
+     * Writes a number as zero-padded decimal digits into a slice of an array.
+     *
+     * @param out the array to write to
+     * @param from index of the first digit
+     * @param to index after the last digit
+     * @param value the number, which must fit in the slice
+     */
+    private static void putDigits(char[] out, int from, int to, int value) {
+        for (int i = to - 1; i >= from; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 }
@@ -0,0 +1,85 @@
+package yin;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Sorted set of the deadlines that are not done, ordered by due time (ties broken by
+ * sequence number, i.e. list order). Marking, unmarking and deleting add or remove a
+ * deadline in O(log n).
+ *
+ * <p>Past-due and upcoming deadlines are the two halves of the set either side of the
+ * current time, so listing k of either costs O(log n + k), however many deadlines are in
+ * the other half.</p>
+ */
+final class DeadlineIndex implements TaskIndex {
+    private static final Comparator<Deadline> BY_DUE = Comparator.comparing(Deadline::getBy)
+            .thenComparingLong(Task::getSequence);
+
+    private final TreeSet<Deadline> undone = new TreeSet<>(BY_DUE);
+
+    /**
+     * Creates an index of the undone deadlines among the given tasks.
+     *
+     * @param tasks the tasks, in list order
+     */
+    DeadlineIndex(List<Task> tasks) {
+        for (Task t : tasks) {
+            onAdd(t);
+        }
+    }
+
+    @Override
+    public void onAdd(Task t) {
+        if (t instanceof Deadline && !t.isDone()) {
+            undone.add((Deadline) t);
+        }
+    }
+
+    @Override
+    public void onRemove(Task t) {
+        if (t instanceof Deadline) {
+            undone.remove(t);
+        }
+    }
+
+    @Override
+    public void onClear() {
+        undone.clear();
+    }
+
+    @Override
+    public void onStatusChange(Task t) {
+        if (t.isDone()) {
+            onRemove(t);
+        } else {
+            onAdd(t);
+        }
+    }
+
+    /**
+     * Returns undone deadlines in order of due time, either those already past due or the
+     * next ones still to come.
+     *
+     * @param now the current time
+     * @param isOverdue true for deadlines due before now, false for those due at or after now
+     * @param limit the most deadlines to return
+     * @return the deadlines, soonest first
+     */
+    List<Task> due(LocalDateTime now, boolean isOverdue, int limit) {
+        // Sorts before every deadline due at now, since sequence numbers start at 0.
+        Deadline bound = new Deadline("", now);
+        bound.setSequence(-1);
+        List<Task> out = new ArrayList<>();
+        for (Deadline d : isOverdue ? undone.headSet(bound, false) : undone.tailSet(bound, true)) {
+            if (out.size() >= limit) {
+                break;
+            }
+            out.add(d);
+        }
+        return out;
+    }
+}
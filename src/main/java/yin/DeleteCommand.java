@@ -4,7 +4,7 @@ package yin;
  * Represents a command that deletes a task from the task list.
  */
 public class DeleteCommand extends Command {
-    private final int index0;
+    private final TaskRef ref;
 
     /**
      * Creates a DeleteCommand to delete a task at the given index.
@@ -12,7 +12,16 @@ public class DeleteCommand extends Command {
      * @param index0 Zero-based index of the task to delete
      */
     public DeleteCommand(int index0) {
-        this.index0 = index0;
+        this(TaskRef.atPosition(index0));
+    }
+
+    /**
+     * Creates a DeleteCommand to delete the referenced task.
+     *
+     * @param ref The task to delete, by position or id
+     */
+    public DeleteCommand(TaskRef ref) {
+        this.ref = ref;
     }
 
     /**
@@ -22,15 +31,13 @@ public class DeleteCommand extends Command {
      * @param tasks The task list to operate on
      * @param ui The UI for displaying messages
      * @param storage The storage to update after deletion
-     * @throws YinException If the index is invalid
+     * @throws YinException If the index is invalid or no task has the id
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
-        if (index0 < 0 || index0 >= tasks.size()) {
-            throw new YinException("Invalid index to delete");
-        }
+        int index0 = ref.resolve(tasks, "Invalid index to delete");
         Task removed = tasks.delete(index0);
         ui.showRemoved(removed, tasks.size());
-        storage.save(tasks.asList());
+        storage.recordDeleted(index0, tasks);
     }
 }
@@ -0,0 +1,81 @@
+package yin;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * How hard Storage tries to get a write onto stable storage before carrying on.
+ * Files are always replaced by writing a temporary file and renaming it over the old one,
+ * so a crash leaves either the old or the new version, never a half-written file.
+ * The levels only differ in whether that outcome survives a power loss or OS crash.
+ */
+public enum Durability {
+    /** Leave flushing to the operating system. Fastest; recent writes may be lost on power loss. */
+    NONE,
+    /** Fsync each file before it replaces the old version or an append returns. */
+    FILE,
+    /** Also fsync the parent directory, so renames, creations and deletions are durable. */
+    DIRECTORY;
+
+    /**
+     * Forces the file's contents to disk if this level asks for it.
+     *
+     * @param file the file to sync
+     * @throws IOException if syncing fails
+     */
+    void syncFile(Path file) throws IOException {
+        if (this == NONE) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Forces the directory entry changes under the file's parent to disk if this level asks for it.
+     * Platforms that cannot open a directory for syncing (e.g. Windows) are skipped silently, but
+     * a directory that opens and then fails to sync is an error like any other failed write.
+     *
+     * @param file a file whose parent directory to sync
+     * @throws IOException if the directory was opened but could not be synced
+     */
+    void syncDirectory(Path file) throws IOException {
+        if (this != DIRECTORY) {
+            return;
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        FileChannel ch;
+        try {
+            ch = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Directories cannot be opened as channels on every platform; rename is still atomic.
+            return;
+        }
+        try (ch) {
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Atomically replaces target with the fully written temp file.
+     *
+     * @param temp the new contents, in the same directory as target
+     * @param target the file to replace
+     * @throws IOException if the file cannot be synced or moved
+     */
+    void replace(Path temp, Path target) throws IOException {
+        syncFile(temp);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target);
+    }
+}
@@ -6,14 +6,15 @@ package yin;
 public class ExitCommand extends Command {
 
     /**
-     * Executes the exit command by showing the exit message to the user.
+     * Executes the exit command by flushing any queued writes and showing the exit message to the user.
      *
      * @param tasks The task list (not used here).
      * @param ui The UI for displaying messages.
-     * @param storage The storage (not used here).
+     * @param storage The storage whose queued writes are flushed.
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) {
+        storage.flush();
         ui.showExit();
     }
 
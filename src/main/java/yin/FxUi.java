@@ -56,6 +56,16 @@ public class FxUi extends Ui {
         addLine("ERROR: " + msg);
     }
 
+    /**
+     * Shows a line of text as it is.
+     *
+     * @param text Text to show
+     */
+    @Override
+    public void showMessage(String text) {
+        addLine(text);
+    }
+
     /**
      * Shows a confirmation when a task is added.
      *
@@ -89,13 +99,45 @@ public class FxUi extends Ui {
      */
     @Override
     public void showList(List<Task> tasks) {
+        showList(tasks, false);
+    }
+
+    /**
+     * Displays all tasks in the list, optionally with their stable ids.
+     *
+     * @param tasks List of tasks to display
+     * @param isShowingIds Whether to show each task's id after its position
+     */
+    @Override
+    public void showList(List<Task> tasks, boolean isShowingIds) {
         assert tasks != null : "List of tasks should not be null";
         if (tasks.isEmpty()) {
             addLine("There are no tasks in the list.");
         } else {
             addLine("Here are your tasks:");
             for (int i = 0; i < tasks.size(); i++) {
-                addLine((i + 1) + ". " + tasks.get(i));
+                Task t = tasks.get(i);
+                addLine((i + 1) + ". " + (isShowingIds ? "#" + t.getId() + " " : "") + t);
+            }
+        }
+    }
+
+    /**
+     * Shows the done tasks, or those still to do, numbered by their positions in the full list.
+     *
+     * @param tasks Selected tasks, in list order
+     * @param positions Zero-based position of each task in the full list
+     * @param isDone Whether these are the done tasks
+     */
+    @Override
+    public void showWithStatus(List<Task> tasks, int[] positions, boolean isDone) {
+        assert tasks != null && tasks.size() == positions.length : "Each task needs its position";
+        if (tasks.isEmpty()) {
+            addLine(isDone ? "No tasks are done yet." : "Nothing left to do!");
+        } else {
+            addLine(isDone ? tasks.size() + " done:" : tasks.size() + " still to do:");
+            for (int i = 0; i < tasks.size(); i++) {
+                addLine((positions[i] + 1) + ". " + tasks.get(i));
             }
         }
     }
@@ -155,4 +197,86 @@ public class FxUi extends Ui {
             addLine("Archived " + count + " task(s) (" + scope + ").");
         }
     }
+
+    /**
+     * Shows the heading of an archive search.
+     *
+     * @param word the keyword being searched for
+     */
+    @Override
+    public void showArchiveSearch(String word) {
+        addLine("Archived tasks matching \"" + word + "\":");
+    }
+
+    /**
+     * Shows one archived task that matched a search.
+     *
+     * @param t the matching task
+     * @param number the task's 1-based number in the archive
+     */
+    @Override
+    public void showArchiveMatch(Task t, long number) {
+        addLine(number + ". " + t);
+    }
+
+    /**
+     * Shows the summary that ends an archive search.
+     *
+     * @param count the number of matches
+     */
+    @Override
+    public void showArchiveSearchDone(int count) {
+        addLine(count == 0 ? "No matches found." : count + " archived task(s) found.");
+    }
+
+    /**
+     * Shows a confirmation when a task is restored from the archive.
+     *
+     * @param t Task that was restored
+     * @param size New number of tasks in the list
+     */
+    @Override
+    public void showUnarchived(Task t, int size) {
+        assert t != null : "Restored task should not be null";
+        addLine("Restored: " + t);
+        addLine("Now you have " + size + " tasks.");
+    }
+
+    /**
+     * Shows the tasks scheduled within a range of dates.
+     *
+     * @param tasks List of scheduled tasks
+     * @param when The range, e.g. "on Oct 15 2019"
+     */
+    @Override
+    public void showScheduled(List<Task> tasks, String when) {
+        assert tasks != null : "Scheduled list should not be null";
+        if (tasks.isEmpty()) {
+            addLine("Nothing scheduled " + when + ".");
+            return;
+        }
+        addLine("Scheduled " + when + ":");
+        for (int i = 0; i < tasks.size(); i++) {
+            addLine((i + 1) + ". " + tasks.get(i));
+        }
+    }
+
+    /**
+     * Shows deadlines that are overdue or coming up next.
+     *
+     * @param deadlines List of deadlines, soonest first
+     * @param isOverdue Whether these are overdue deadlines rather than upcoming ones
+     */
+    @Override
+    public void showDue(List<Task> deadlines, boolean isOverdue) {
+        assert deadlines != null : "Deadline list should not be null";
+        if (deadlines.isEmpty()) {
+            addLine(isOverdue ? "Nothing is overdue." : "No upcoming deadlines.");
+            return;
+        }
+        addLine(isOverdue ? "Overdue:" : "Next deadlines:");
+        for (int i = 0; i < deadlines.size(); i++) {
+            addLine((i + 1) + ". " + deadlines.get(i));
+        }
+    }
 }
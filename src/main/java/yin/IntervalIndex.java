@@ -0,0 +1,254 @@
+package yin;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Interval tree over the dates that deadlines and events occur on, as defined by
+ * Schedulable#occursOn(LocalDate): a deadline covers the day it is due, an event every day
+ * from its start to its end. Todos are not indexed.
+ *
+ * <p>The tree is a treap ordered by start day (ties broken by sequence number), where every
+ * node also records the latest end day in its subtree. A query only descends into subtrees
+ * whose latest end reaches the query and whose earliest start does not pass it, so it visits
+ * O(log n) nodes plus those on the paths to the k tasks it reports. Insertions and removals
+ * take O(log n) expected time.</p>
+ */
+final class IntervalIndex implements TaskIndex {
+    private static final Comparator<Task> BY_SEQUENCE = Comparator.comparingLong(Task::getSequence);
+
+    /** Source of treap priorities; seeded so the tree shape is reproducible. */
+    private final Random random = new Random(0);
+    private Node root = null;
+
+    /** A task with the days it covers, and the latest end day in its subtree. */
+    private static final class Node {
+        private final Task task;
+        private final long start;
+        private final long end;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        Node(Task task, long start, long end, int priority) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    /**
+     * Creates an index over the given tasks.
+     *
+     * @param tasks the tasks, in list order
+     */
+    IntervalIndex(List<Task> tasks) {
+        for (Task t : tasks) {
+            onAdd(t);
+        }
+    }
+
+    @Override
+    public void onAdd(Task t) {
+        long[] span = span(t);
+        if (span != null) {
+            root = insert(root, new Node(t, span[0], span[1], random.nextInt()));
+        }
+    }
+
+    @Override
+    public void onRemove(Task t) {
+        long[] span = span(t);
+        if (span != null) {
+            root = remove(root, t, span[0]);
+        }
+    }
+
+    @Override
+    public void onClear() {
+        root = null;
+    }
+
+    /**
+     * Returns the tasks that occur on at least one day in the given range.
+     *
+     * @param from first day of the range
+     * @param to last day of the range, inclusive
+     * @return the tasks in list order
+     */
+    List<Task> between(LocalDate from, LocalDate to) {
+        List<Task> out = new ArrayList<>();
+        collect(root, from.toEpochDay(), to.toEpochDay(), out);
+        out.sort(BY_SEQUENCE);
+        return out;
+    }
+
+    /**
+     * Returns the days a task occurs on, as epoch days.
+     *
+     * @param t the task
+     * @return the first and last day, or null if the task is not scheduled on any day
+     */
+    private static long[] span(Task t) {
+        if (t instanceof Deadline) {
+            long day = ((Deadline) t).getBy().toLocalDate().toEpochDay();
+            return new long[] {day, day};
+        }
+        if (t instanceof Event) {
+            long start = ((Event) t).getFrom().toLocalDate().toEpochDay();
+            long end = ((Event) t).getTo().toLocalDate().toEpochDay();
+            // An event that ends before it starts occurs on no day.
+            return start <= end ? new long[] {start, end} : null;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the tasks of a subtree that overlap [lo, hi].
+     *
+     * @param node the subtree
+     * @param lo first day of the query
+     * @param hi last day of the query
+     * @param out receives the overlapping tasks
+     */
+    private static void collect(Node node, long lo, long hi, List<Task> out) {
+        if (node == null || node.maxEnd < lo) {
+            return;
+        }
+        collect(node.left, lo, hi, out);
+        if (node.start > hi) {
+            // Everything to the right starts even later.
+            return;
+        }
+        if (node.end >= lo) {
+            out.add(node.task);
+        }
+        collect(node.right, lo, hi, out);
+    }
+
+    /**
+     * Compares a node's key with the key of a task.
+     *
+     * @param node the node
+     * @param start start day of the task
+     * @param t the task
+     * @return negative, zero or positive as the task sorts before, at or after the node
+     */
+    private static int compare(Node node, long start, Task t) {
+        int c = Long.compare(start, node.start);
+        return c != 0 ? c : Long.compare(t.getSequence(), node.task.getSequence());
+    }
+
+    /**
+     * Inserts a node into a subtree.
+     *
+     * @param node the subtree
+     * @param added the node to insert
+     * @return the new root of the subtree
+     */
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(node, added.start, added.task) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Removes a task from a subtree.
+     *
+     * @param node the subtree
+     * @param t the task to remove
+     * @param start the task's start day
+     * @return the new root of the subtree
+     */
+    private static Node remove(Node node, Task t, long start) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(node, start, t);
+        if (c < 0) {
+            node.left = remove(node.left, t, start);
+        } else if (c > 0) {
+            node.right = remove(node.right, t, start);
+        } else if (node.task != t) {
+            // Same key but another task: the one we want is not in the tree.
+            return node;
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            node = rotateRight(node);
+            node.right = remove(node.right, t, start);
+        } else {
+            node = rotateLeft(node);
+            node.left = remove(node.left, t, start);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Rotates a subtree right, lifting its left child.
+     *
+     * @param node the subtree
+     * @return the new root of the subtree
+     */
+    private static Node rotateRight(Node node) {
+        Node lifted = node.left;
+        node.left = lifted.right;
+        lifted.right = node;
+        update(node);
+        update(lifted);
+        return lifted;
+    }
+
+    /**
+     * Rotates a subtree left, lifting its right child.
+     *
+     * @param node the subtree
+     * @return the new root of the subtree
+     */
+    private static Node rotateLeft(Node node) {
+        Node lifted = node.right;
+        node.right = lifted.left;
+        lifted.left = node;
+        update(node);
+        update(lifted);
+        return lifted;
+    }
+
+    /**
+     * Recomputes the latest end day of a subtree from its children.
+     *
+     * @param node the subtree root
+     */
+    private static void update(Node node) {
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+}
@@ -1,12 +1,51 @@
 package yin;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * Represents a command that lists all tasks in the task list.
+ * Represents a command that lists all tasks in the task list,
+ * or only those that are done or still to do.
  */
 public class ListCommand extends Command {
+    /** Which tasks to list. */
+    public enum Filter { ALL, DONE, UNDONE }
+
+    private final Filter filter;
+    /** Whether to show each task's stable id. */
+    private final boolean isShowingIds;
+
+    /**
+     * Creates a command that lists tasks by position only.
+     */
+    public ListCommand() {
+        this(false);
+    }
+
+    /**
+     * Creates a command that lists tasks, optionally with their stable ids.
+     *
+     * @param isShowingIds whether to show each task's id
+     */
+    public ListCommand(boolean isShowingIds) {
+        this.filter = Filter.ALL;
+        this.isShowingIds = isShowingIds;
+    }
+
+    /**
+     * Creates a command that lists the tasks selected by the filter.
+     *
+     * @param filter which tasks to list
+     */
+    public ListCommand(Filter filter) {
+        this.filter = filter;
+        this.isShowingIds = false;
+    }
 
     /**
-     * Executes the list command by showing all tasks to the user.
+     * Executes the list command by showing the selected tasks to the user.
+     * Done and undone tasks are picked out by the task list's done bitmap,
+     * and keep their positions in the full list.
      *
      * @param tasks The task list containing all tasks.
      * @param ui The UI for displaying messages.
@@ -14,6 +53,16 @@ public class ListCommand extends Command {
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) {
-        ui.showList(tasks.asList());
+        if (filter == Filter.ALL) {
+            ui.showList(tasks.view(), isShowingIds);
+            return;
+        }
+        boolean isDone = filter == Filter.DONE;
+        int[] positions = tasks.positionsWithStatus(isDone);
+        List<Task> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(tasks.get(position));
+        }
+        ui.showWithStatus(selected, positions, isDone);
     }
 }
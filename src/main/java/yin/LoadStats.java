@@ -0,0 +1,112 @@
+package yin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counts collected while Storage loads the data file.
+ * Read time covers pulling lines off disk and decoding them; parse time covers
+ * scanning fields and building tasks; replay time covers applying the journal.
+ */
+public class LoadStats {
+    private long readNanos;
+    private long parseNanos;
+    private long replayNanos;
+    private long lines;
+    private long tasks;
+    private long skipped;
+
+    /**
+     * Adds time spent reading and decoding the snapshot.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    void addRead(long nanos) {
+        readNanos += nanos;
+    }
+
+    /**
+     * Adds time spent parsing snapshot lines into tasks.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    void addParse(long nanos) {
+        parseNanos += nanos;
+    }
+
+    /**
+     * Adds time spent replaying the journal.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    void addReplay(long nanos) {
+        replayNanos += nanos;
+    }
+
+    /**
+     * Counts one snapshot line, and whether it produced a task.
+     *
+     * @param isTask true if the line was parsed into a task, false if it was skipped
+     */
+    void countLine(boolean isTask) {
+        lines++;
+        if (isTask) {
+            tasks++;
+        } else {
+            skipped++;
+        }
+    }
+
+    /**
+     * Merges counts and timings gathered separately, e.g. by another worker.
+     *
+     * @param other the stats to add into this one
+     */
+    void add(LoadStats other) {
+        readNanos += other.readNanos;
+        parseNanos += other.parseNanos;
+        replayNanos += other.replayNanos;
+        lines += other.lines;
+        tasks += other.tasks;
+        skipped += other.skipped;
+    }
+
+    /**
+     * Returns the number of snapshot lines read, including skipped ones.
+     *
+     * @return line count
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the number of snapshot lines that were skipped as blank or malformed.
+     *
+     * @return skipped line count
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns a one-line summary of the load.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return "Loaded " + tasks + " task(s) from " + lines + " line(s), skipped " + skipped
+                + "; read " + millis(readNanos) + "ms, parse " + millis(parseNanos)
+                + "ms, replay " + millis(replayNanos) + "ms";
+    }
+
+    /**
+     * Converts nanoseconds to whole milliseconds.
+     *
+     * @param nanos duration in nanoseconds
+     * @return duration in milliseconds
+     */
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,139 @@
+package yin;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from positive long keys to long values, held in two primitive arrays with linear
+ * probing, so an entry costs two array slots instead of a HashMap node and two boxed Longs.
+ * Key 0 marks an empty slot.
+ */
+final class LongLongMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private long[] values = new long[MIN_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Returns the value stored for a key.
+     *
+     * @param key the key, positive
+     * @param missing value to return if the key is absent
+     * @return the value, or missing
+     */
+    long get(long key, long missing) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key the key, positive
+     * @return true if the map holds the key
+     */
+    boolean containsKey(long key) {
+        return keys[find(key)] == key;
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value.
+     *
+     * @param key the key, positive
+     * @param value the value
+     */
+    void put(long key, long value) {
+        assert key > 0 : "Keys must be positive";
+        int slot = find(key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes a key, shifting later entries of its probe run back so lookups need no tombstones.
+     *
+     * @param key the key
+     */
+    void remove(long key) {
+        int mask = keys.length - 1;
+        int slot = find(key);
+        if (keys[slot] != key) {
+            return;
+        }
+        size--;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == 0) {
+                break;
+            }
+            int home = hash(keys[next]) & mask;
+            // Move the entry back unless its home lies cyclically in (slot, next].
+            boolean isInPlace = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!isInPlace) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = 0;
+    }
+
+    /** Removes all entries. */
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    /**
+     * Returns the slot holding a key, or the empty slot where it would go.
+     *
+     * @param key the key
+     * @return the slot
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rehashes every entry into tables of a new capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key so that consecutive ids do not cluster.
+     *
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
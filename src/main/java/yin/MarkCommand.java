@@ -4,8 +4,8 @@ package yin;
  * A Command that marks a task in the TaskList as done.
  */
 public class MarkCommand extends Command {
-    /** Zero-based index of the task to mark. */
-    private final int index0;
+    /** The task to mark. */
+    private final TaskRef ref;
 
     /**
      * Creates a new command to mark the task at the given index as done.
@@ -13,25 +13,32 @@ public class MarkCommand extends Command {
      * @param index0 zero-based index of the task to mark
      */
     public MarkCommand(int index0) {
-        this.index0 = index0;
+        this(TaskRef.atPosition(index0));
+    }
+
+    /**
+     * Creates a new command to mark the referenced task as done.
+     *
+     * @param ref the task to mark, by position or id
+     */
+    public MarkCommand(TaskRef ref) {
+        this.ref = ref;
     }
 
     /**
      * Executes this command: validates the index, marks the task as done,
-     * displays a confirmation, and saves to storage.
+     * displays a confirmation, and records the change in storage.
      *
      * @param tasks the task list to update
      * @param ui the user interface to display feedback
-     * @param storage the storage to persist the updated task list
-     * @throws YinException if the index is invalid
+     * @param storage the storage that journals the change
+     * @throws YinException if the index is invalid or no task has the id
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
-        if (index0 < 0 || index0 >= tasks.size()) {
-            throw new YinException("Invalid index to mark");
-        }
+        int index0 = ref.resolve(tasks, "Invalid index to mark");
         Task task = tasks.mark(index0);
         ui.showMarked(task);
-        storage.save(tasks.asList());
+        storage.recordMarked(index0, tasks);
     }
 }
@@ -0,0 +1,31 @@
+package yin;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a command that lists the next deadlines still to come that are not yet done.
+ */
+public class NextCommand extends Command {
+    private final int count;
+
+    /**
+     * Creates a NextCommand that shows up to the given number of deadlines.
+     *
+     * @param count The most deadlines to show
+     */
+    public NextCommand(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Executes the command by showing the upcoming deadlines, soonest first.
+     *
+     * @param tasks The task list to query
+     * @param ui The UI for displaying the deadlines
+     * @param storage The storage (not modified by this command)
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        ui.showDue(tasks.upcoming(LocalDateTime.now(), count), false);
+    }
+}
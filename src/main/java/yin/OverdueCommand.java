@@ -0,0 +1,21 @@
+package yin;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a command that lists the deadlines that are past due and not yet done.
+ */
+public class OverdueCommand extends Command {
+
+    /**
+     * Executes the command by showing the overdue deadlines, most overdue first.
+     *
+     * @param tasks The task list to query
+     * @param ui The UI for displaying the deadlines
+     * @param storage The storage (not modified by this command)
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        ui.showDue(tasks.overdue(LocalDateTime.now()), true);
+    }
+}
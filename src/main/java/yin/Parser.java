@@ -1,13 +1,23 @@
 package yin;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 /**
  * Parses raw user input into Command objects.
  * This utility class supports commands such as todo, deadline, event,
- * list, mark, unmark, delete, and bye.
+ * list, mark, unmark, delete, find, archive, unarchive, on, between,
+ * overdue, next, and bye.
  * For invalid inputs, it either throws a YinException or produces an
  * UnknownCommand that signals an unrecognised command.
  */
 public final class Parser {
+    /** Number of deadlines "next" shows when no number is given. */
+    private static final int DEFAULT_NEXT_COUNT = 5;
+
+    /** Command heads, which the tokenizer recognises without building a String for them. */
+    private static final String[] HEADS = {"bye", "list", "todo", "deadline", "event", "mark", "unmark",
+        "delete", "find", "archive", "on", "between", "overdue", "next", "unarchive"};
 
     /**
      * Utility class, not meant to be instantiated.
@@ -15,14 +25,57 @@ public final class Parser {
     private Parser() {}
 
     /**
-     * Collapses multiple consecutive whitespace characters into a single space,
-     * and trims leading/trailing whitespace.
+     * Parses a date in any of the formats accepted by DateTimes.parseFlexible(String),
+     * ignoring the time of day if one is given.
+     *
+     * @param text the date text
+     * @param example an example of the command, for the error message
+     * @return the parsed date
+     * @throws YinException if the text is not a date
+     */
+    private static LocalDate parseDate(String text, String example) throws YinException {
+        try {
+            return DateTimes.parseFlexible(text).toLocalDate();
+        } catch (DateTimeParseException e) {
+            throw new YinException("I can't read the date \"" + text.trim() + "\", try e.g. \"" + example + "\"");
+        }
+    }
+
+    /**
+     * Checks that a task description can be stored. The data file separates fields with '|',
+     * so a description containing one would not load back as it was saved.
+     *
+     * @param description the description
+     * @return the description
+     * @throws YinException if the description contains '|'
+     */
+    private static String checkDescription(String description) throws YinException {
+        if (description.indexOf('|') >= 0) {
+            throw new YinException("Descriptions can't contain '|', sorry!");
+        }
+        return description;
+    }
+
+    /**
+     * Parses a task reference from the trimmed tail: a one-based position, or a stable id
+     * prefixed with '#'.
      *
-     * @param string the input string
-     * @return a trimmed string with internal whitespace normalised to single spaces
+     * @param tokens the tokenized command
+     * @return the reference, with positions converted to zero-based
+     * @throws NumberFormatException if the tail is not a number or '#' and a number
      */
-    private static String collapseSpaces(String string) {
-        return string.trim().replaceAll("\\s+", " ");
+    private static TaskRef parseTaskRef(Tokenizer tokens) {
+        String line = tokens.line();
+        int from = tokens.bodyStart();
+        int to = tokens.end();
+        if (from < to && line.charAt(from) == '#') {
+            long id = Long.parseLong(line, from + 1, to, 10);
+            if (id <= 0) {
+                throw new NumberFormatException("Task ids are positive: " + tokens.body());
+            }
+            return TaskRef.withId(id);
+        }
+        return TaskRef.atPosition(Integer.parseInt(line, from, to, 10) - 1); // convert to 0-based
     }
 
     /**
@@ -32,130 +85,138 @@ public final class Parser {
      * It checks that required arguments are present, and builds the right Command object.
      * If the input is not valid, it may return an UnknownCommand or throw a YinException.
      * Supported commands: bye, list, todo, deadline, event, mark, unmark, delete.
+     * The line is read once by a Tokenizer; only the arguments a Command keeps become Strings.
      *
      * @param fullCommand the raw user input line
      * @return a Command that represents the parsed action
      * @throws YinException if the input is empty or does not match the expected format for the command
      */
     public static Command parse(String fullCommand) throws YinException {
-        if (fullCommand == null || fullCommand.trim().isEmpty()) {
+        Tokenizer tokens = fullCommand == null ? null : new Tokenizer(fullCommand);
+        if (tokens == null || tokens.isEmpty()) {
             throw new YinException("input is empty >:("
                     + "\nGive me something please.");
         }
+        String line = tokens.line();
+        int bodyStart = tokens.bodyStart();
+        int end = tokens.end();
 
-        String command = fullCommand.trim();
-        int spaceIndex = command.indexOf(' ');
-        String head = (spaceIndex == -1 ? command : command.substring(0, spaceIndex)).toLowerCase();
-        String tail = (spaceIndex == -1 ? "" : command.substring(spaceIndex + 1));
-
-        switch (head) {
+        switch (tokens.head(HEADS)) {
         case "bye":
             return new ExitCommand();
 
         case "list":
-            if (!command.equals("list")) {
+            if (tokens.isTail("ids")) {
+                return new ListCommand(true);
+            } else if (tokens.isTail("done")) {
+                return new ListCommand(ListCommand.Filter.DONE);
+            } else if (tokens.isTail("undone")) {
+                return new ListCommand(ListCommand.Filter.UNDONE);
+            }
+            if (!tokens.isExactly("list")) {
                 return new UnknownCommand("list alone is enough!");
             }
             return new ListCommand();
 
         case "todo": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("todo needs a description!"
                         + "\ne.g.\"todo borrow book\"");
             }
-            return new AddTodoCommand(collapseSpaces(tail));
+            return new AddTodoCommand(checkDescription(tokens.collapsed(bodyStart, end)));
         }
 
         case "deadline": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Give me a proper input please..."
                         + "\nDeadline format: deadline <desc> /by <when>");
             }
-            String body = tail.trim();
-            int separator = body.indexOf("/by");
+            int separator = tokens.byAt();
             if (separator == -1) {
                 throw new YinException("Give me a proper input please..."
                         + "\nDeadline format: deadline <desc> /by <when>");
             }
-            String desc = body.substring(0, separator).trim();
-            String by = body.substring(separator + 3).trim();
-            if (desc.isEmpty() || by.isEmpty()) {
+            if (tokens.isEmpty(bodyStart, separator) || tokens.isEmpty(separator + 3, end)) {
                 throw new YinException("Give me a proper input please..."
                         + "\nDeadline format: deadline <desc> /by <when>");
             }
-            return new AddDeadlineCommand(collapseSpaces(desc), by);
+            return new AddDeadlineCommand(checkDescription(tokens.collapsed(bodyStart, separator)),
+                    tokens.trimmed(separator + 3, end));
         }
 
         case "event": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Please feed me some proper input..."
                         + "\nEvent format: event <desc> /from <start> /to <end>");
             }
-            String body = tail.trim();
-            int fromPosition = body.indexOf("/from");
-            int toPosition = body.indexOf("/to", fromPosition + 5);
-            if (fromPosition == -1 || toPosition == -1 || toPosition < fromPosition + 5) {
+            int fromPosition = tokens.fromAt();
+            int toPosition = tokens.toAt();
+            if (fromPosition == -1 || toPosition == -1) {
                 throw new YinException("Please feed me a proper input man..."
                         + "\nEvent format: event <desc> /from <start> /to <end>");
             }
-            String desc = body.substring(0, fromPosition).trim();
-            String from = body.substring(fromPosition + 5, toPosition).trim();
-            String to = body.substring(toPosition + 3).trim();
-            if (desc.isEmpty() || from.isEmpty() || to.isEmpty()) {
+            if (tokens.isEmpty(bodyStart, fromPosition) || tokens.isEmpty(fromPosition + 5, toPosition)
+                    || tokens.isEmpty(toPosition + 3, end)) {
                 throw new YinException("Please feed me some proper input man..."
                         + "\nEvent format: event <desc> /from <start> /to <end>");
             }
-            return new AddEventCommand(collapseSpaces(desc), from, to);
+            return new AddEventCommand(checkDescription(tokens.collapsed(bodyStart, fromPosition)),
+                    tokens.trimmed(fromPosition + 5, toPosition), tokens.trimmed(toPosition + 3, end));
         }
 
         case "mark": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Give task number, e.g. \"mark 2\"");
             }
             try {
-                int index0 = Integer.parseInt(tail.trim()) - 1; // convert to 0-based
-                return new MarkCommand(index0);
+                return new MarkCommand(parseTaskRef(tokens));
             } catch (NumberFormatException e) {
                 throw new YinException("Task number must be integer! e.g. \"mark 2\"");
             }
         }
 
         case "unmark": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Give task number, e.g. \"unmark 2\"");
             }
             try {
-                int index0 = Integer.parseInt(tail.trim()) - 1; // convert to 0-based
-                return new UnmarkCommand(index0);
+                return new UnmarkCommand(parseTaskRef(tokens));
             } catch (NumberFormatException e) {
                 throw new YinException("Task number must be integer! e.g. \"unmark 2\"");
             }
         }
 
         case "delete": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Give task number, e.g. \"delete 2\"");
             }
             try {
-                int index0 = Integer.parseInt(tail.trim()) - 1; // convert to 0-based
-                return new DeleteCommand(index0);
+                return new DeleteCommand(parseTaskRef(tokens));
             } catch (NumberFormatException e) {
                 throw new YinException("Task number must be integer! e.g. \"delete 2\"");
             }
         }
 
         case "find": {
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("Find needs a keyword, e.g. \"find book\"");
             }
-            return new FindCommand(collapseSpaces(tail));
+            return new FindCommand(tokens.collapsed(bodyStart, end));
         }
 
         case "archive": { // [NEW]
-            if (tail.isBlank()) {
+            if (tokens.isTailBlank()) {
                 throw new YinException("archive needs a scope: \"archive all\" or \"archive done\"");
             }
-            String arg = tail.trim().toLowerCase();
+            int wordEnd = tokens.firstWordEnd();
+            if (line.substring(bodyStart, wordEnd).toLowerCase().equals("find")) {
+                String word = tokens.collapsed(wordEnd, end);
+                if (word.isBlank()) {
+                    throw new YinException("archive find needs a keyword, e.g. \"archive find book\"");
+                }
+                return new ArchiveFindCommand(word);
+            }
+            String arg = tokens.body().toLowerCase();
             switch (arg) {
             case "all":
                 return new ArchiveCommand(ArchiveCommand.Scope.ALL);
@@ -167,6 +228,59 @@ public final class Parser {
             }
         }
 
+        case "on": {
+            if (tokens.isTailBlank()) {
+                throw new YinException("Give a date, e.g. \"on 2019-10-15\"");
+            }
+            LocalDate date = parseDate(tokens.body(), "on 2019-10-15");
+            return new ScheduleCommand(date, date);
+        }
+
+        case "between": {
+            String[] dates = tokens.words();
+            if (dates.length != 2) {
+                throw new YinException("Give two dates, e.g. \"between 2019-10-15 2019-10-20\"");
+            }
+            LocalDate from = parseDate(dates[0], "between 2019-10-15 2019-10-20");
+            LocalDate to = parseDate(dates[1], "between 2019-10-15 2019-10-20");
+            if (to.isBefore(from)) {
+                throw new YinException("The second date must not be before the first");
+            }
+            return new ScheduleCommand(from, to);
+        }
+
+        case "overdue":
+            if (!tokens.isExactly("overdue")) {
+                return new UnknownCommand("overdue alone is enough!");
+            }
+            return new OverdueCommand();
+
+        case "next": {
+            if (tokens.isTailBlank()) {
+                return new NextCommand(DEFAULT_NEXT_COUNT);
+            }
+            try {
+                int count = Integer.parseInt(line, bodyStart, end, 10);
+                if (count < 1) {
+                    throw new YinException("Number of deadlines must be positive! e.g. \"next 3\"");
+                }
+                return new NextCommand(count);
+            } catch (NumberFormatException e) {
+                throw new YinException("Number of deadlines must be integer! e.g. \"next 3\"");
+            }
+        }
+
+        case "unarchive": {
+            if (tokens.isTailBlank()) {
+                throw new YinException("Give archived task number, e.g. \"unarchive 2\"");
+            }
+            try {
+                return new UnarchiveCommand(Long.parseLong(line, bodyStart, end, 10));
+            } catch (NumberFormatException e) {
+                throw new YinException("Archived task number must be integer! e.g. \"unarchive 2\"");
+            }
+        }
+
         default:
             return new UnknownCommand("Give me a command first >:("
                     + "\nTry: todo, deadline, event, list, mark, unmark, delete or bye.");
@@ -0,0 +1,40 @@
+package yin;
+
+import java.time.LocalDate;
+
+/**
+ * Command that lists the deadlines and events falling on a date or within a range of dates.
+ */
+public class ScheduleCommand extends Command {
+    private final LocalDate from;
+    private final LocalDate to;
+
+    /**
+     * Creates a ScheduleCommand for the days from one date to another, inclusive.
+     * Use the same date twice for a single day.
+     *
+     * @param from the first day
+     * @param to the last day
+     */
+    public ScheduleCommand(LocalDate from, LocalDate to) {
+        assert !to.isBefore(from) : "Date range must not be reversed";
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Executes the command by showing every task that occurs within the range.
+     *
+     * @param tasks The task list to query
+     * @param ui The UI for displaying the tasks
+     * @param storage The storage (not modified by this command)
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        String when = from.equals(to)
+                ? "on " + DateTimes.formatDisplay(from.atStartOfDay())
+                : "between " + DateTimes.formatDisplay(from.atStartOfDay())
+                        + " and " + DateTimes.formatDisplay(to.atStartOfDay());
+        ui.showScheduled(tasks.occurringBetween(from, to), when);
+    }
+}
@@ -0,0 +1,153 @@
+package yin;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An array-backed list whose snapshot() shares the array instead of copying it.
+ *
+ * <p>A snapshot reads the first size elements of the array as they were when it was taken.
+ * Appending writes past them, so it goes on in place while a snapshot is held. Any other
+ * change to a shared array first copies it, once, and the list then owns the copy; the
+ * snapshot keeps the old array, which nothing changes again. So snapshot() is O(1), a run of
+ * appends after it costs nothing extra, and only the first set, remove or insert after a
+ * snapshot pays an O(n) copy, as an ArrayList copy would have at the time of the snapshot.</p>
+ *
+ * @param <E> the element type
+ */
+final class SharedArrayList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int MIN_CAPACITY = 10;
+
+    private Object[] elements;
+    private int size;
+    /** Whether a snapshot reads the array, so that only appends may write to it. */
+    private boolean isShared = false;
+
+    /** Creates an empty list. */
+    SharedArrayList() {
+        elements = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Creates a list holding the given elements in iteration order.
+     *
+     * @param elements the initial elements
+     */
+    SharedArrayList(Collection<? extends E> elements) {
+        this.elements = elements.toArray();
+        this.size = this.elements.length;
+        if (this.elements.getClass() != Object[].class) {
+            this.elements = Arrays.copyOf(this.elements, size, Object[].class);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size);
+        return (E) elements[index];
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = get(index);
+        own(size);
+        elements[index] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size + 1);
+        if (index == size && size < elements.length) {
+            // A snapshot never reads past its own size, so appending in place is safe.
+            elements[size++] = element;
+        } else {
+            own(size + 1);
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = element;
+            size++;
+        }
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = get(index);
+        own(size);
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (isShared) {
+            elements = new Object[MIN_CAPACITY];
+            isShared = false;
+        } else {
+            Arrays.fill(elements, 0, size, null);
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        own(size);
+        System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+        int newSize = size - (toIndex - fromIndex);
+        Arrays.fill(elements, newSize, size, null);
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Returns an unmodifiable list of the current elements in O(1). It shares the array with
+     * this list, and later changes to this list do not show in it.
+     *
+     * @return the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    List<E> snapshot() {
+        isShared = true;
+        return Collections.unmodifiableList((List<E>) Arrays.asList(elements).subList(0, size));
+    }
+
+    /**
+     * Makes sure the array is not shared with a snapshot and has room for the given number of
+     * elements, copying it if either is not so.
+     *
+     * @param capacity the number of elements the array must hold
+     */
+    private void own(int capacity) {
+        if (!isShared && capacity <= elements.length) {
+            return;
+        }
+        int grown = capacity <= elements.length ? elements.length : elements.length + (elements.length >> 1);
+        elements = Arrays.copyOf(elements, Math.max(Math.max(grown, capacity), MIN_CAPACITY));
+        isShared = false;
+    }
+
+    /**
+     * Checks that an index is in range.
+     *
+     * @param index the index
+     * @param bound the first index out of range
+     */
+    private void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package yin;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Persists and retrieves Task data from the local filesystem.
@@ -15,14 +27,115 @@ import java.util.List;
  * T | 0|1 | description
  * D | 0|1 | description | byDateTime
  * E | 0|1 | description | fromDateTime | toDateTime
- * Date-time fields are serialised using a storage formatter,
- * and parsed using DateTimes.parseFlexible(String).
+ * Date-time fields are written and read with the fixed-width storage codec in DateTimes.
+ * See TaskFormat for the line codec.
+ *
+ * <p>The data file is a snapshot. Single-task mutations are appended as small records to a
+ * journal file next to it, and replayed on top of the snapshot by {@link #load()}:
+ * add | T | 0|1 | description ...
+ * mark | index
+ * unmark | index
+ * delete | index
+ * Both files start with an "# epoch N" header; the snapshot's also records the next task id,
+ * "# epoch N next M", so ids of deleted and archived tasks are not handed out again, and once
+ * tasks have been archived the token of the latest archive, "# epoch N next M archive T". A journal
+ * is only replayed when its epoch matches the snapshot's, so a crash between writing a new
+ * snapshot and resetting the journal cannot apply the same records twice. Once the journal
+ * grows past a threshold it is compacted into a fresh snapshot.</p>
+ *
+ * <p>Snapshots can also be written in a compact binary format (see BinarySnapshot); the format
+ * on disk is detected when loading, and {@link #convert(Format)} rewrites a file in place.</p>
+ *
+ * <p>Snapshots are written to a temporary file and renamed over the data file, so a crash
+ * mid-save leaves the previous snapshot intact. See Durability for the fsync levels.</p>
+ *
+ * <p>By default every change is written before the command returns. In write-behind mode
+ * (see {@link #enableWriteBehind(long, long)}) changes are queued and written together by a
+ * background thread once input goes quiet, so a burst of commands costs one disk write.
+ * {@link #flush()} forces queued changes out, and runs automatically when the JVM shuts down.</p>
+ *
+ * <p>Between {@link #beginBatch()} and {@link #endBatch(TaskList)} changes are not written at
+ * all, only noted, and the batch ends with a single snapshot, so a script of many commands
+ * costs one write instead of a journal record each.</p>
  */
 public class Storage {
+    /** Snapshot file formats. Journals are always text. */
+    public enum Format { TEXT, BINARY }
+
+    /** Number of journal records after which the journal is folded into a new snapshot. */
+    private static final int COMPACT_THRESHOLD = 1000;
+    /** Prefix of the header line that tags snapshots and journals with their epoch. */
+    private static final String EPOCH_PREFIX = "# epoch ";
+    /** Separates the epoch from the next task id in a snapshot header. */
+    private static final String NEXT_ID_MARKER = " next ";
+    /** Separates the next task id from the archive token in a snapshot header. */
+    private static final String ARCHIVE_MARKER = " archive ";
+    /** Size in characters of the buffer used when streaming the data file. */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    /** Number of lines read from the data file before they are parsed. */
+    private static final int READ_BLOCK_LINES = 4096;
+    /** Default size in bytes from which the data file is parsed in parallel. */
+    static final long DEFAULT_PARALLEL_LOAD_BYTES = 8L << 20;
+
     /** Path to the data file used for persistence. */
     private final Path file;
-    /** Path to the archive file used to store archived tasks. */
-    private final Path archiveFile;
+    /** Path to the journal of mutations applied since the last snapshot. */
+    private final Path journalFile;
+    /** Segmented archive of tasks moved out of the active list. */
+    private final Archive archive;
+    /** Epoch of the current snapshot; bumped every time a snapshot is written. */
+    private long epoch = 0;
+    /**
+     * Next task id to hand out: above the id of every task saved so far, active or archived.
+     * -1 while loading data that predates recording it.
+     */
+    private long nextId = 1;
+    /**
+     * Token of the latest archive whose snapshot was written, or 0 if none. Every later snapshot
+     * carries it, so an archive intent with this token belongs to a snapshot that reached disk.
+     */
+    private long archiveToken = 0;
+    /** Number of records in the journal for the current epoch, including queued ones. */
+    private int journalRecords = 0;
+    /** Whether the journal on disk already carries the header for the current epoch. */
+    private boolean isJournalOpen = false;
+
+    /** Held while writing to disk; taken before the monitor of this object, never after. */
+    private final Object flushLock = new Object();
+    /** Snapshot waiting to be written, or null if none is queued. */
+    private List<Task> pendingSnapshot = null;
+    /** Journal records waiting to be written after pendingSnapshot. */
+    private List<String> pendingRecords = new ArrayList<>();
+    /** Background writer used in write-behind mode, or null when writes are synchronous. */
+    private ScheduledExecutorService writer = null;
+    /** The flush currently scheduled on the writer, if any. */
+    private ScheduledFuture<?> scheduledFlush = null;
+    /** How long input must be quiet before queued changes are flushed. */
+    private long debounceNanos;
+    /** Upper bound on how long a change may stay queued under continuous input. */
+    private long maxDelayNanos;
+    /** System.nanoTime() of the oldest queued change, or -1 if nothing is queued. */
+    private long firstPendingAt = -1;
+    /**
+     * Set when a write failed, so disk no longer matches memory. Journal records are positional,
+     * so the next change must write a full snapshot instead of an append.
+     */
+    private boolean isSnapshotStale = false;
+    /** Whether changes are only noted, to be saved together by endBatch(TaskList). */
+    private boolean isBatching = false;
+    /** Whether a change was noted during the current batch that is not on disk yet. */
+    private boolean isBatchDirty = false;
+
+    /** Timings of the most recent load. */
+    private LoadStats lastLoadStats = new LoadStats();
+    /** Whether to print load timings to standard error. */
+    private boolean isReportingLoadStats = false;
+    /** Format used when writing snapshots. */
+    private Format format = Format.TEXT;
+    /** How far writes are forced to disk before they count as done. */
+    private Durability durability = Durability.NONE;
+    /** Data files of at least this many bytes are parsed in parallel. */
+    private long parallelLoadThreshold = DEFAULT_PARALLEL_LOAD_BYTES;
 
     /**
      * Creates a storage backed by the given relative file path.
@@ -31,9 +144,10 @@ public class Storage {
      */
     public Storage(String relativePath) {
         this.file = Paths.get(relativePath);
+        this.journalFile = this.file.resolveSibling(this.file.getFileName() + ".journal");
         Path parent = this.file.getParent();
-        this.archiveFile = (parent == null) ? Paths.get("Archive.txt")
-                : parent.resolve("Archive.txt");
+        Path archiveDir = (parent == null) ? Paths.get("archive") : parent.resolve("archive");
+        this.archive = new Archive(archiveDir, archiveDir.resolveSibling("Archive.txt"));
     }
 
     /**
@@ -49,34 +163,179 @@ public class Storage {
     }
 
     /**
-     * Serialises a Task into the storage line format.
+     * Switches this storage to write-behind mode. Changes are flushed by a background thread
+     * once no new change has arrived for debounceMillis, and never later than maxDelayMillis
+     * after the oldest unflushed change. A shutdown hook flushes anything still queued.
      *
-     * @param t the task to serialise
-     * @return a single-line, pipe-delimited representation of the task
+     * @param debounceMillis quiet period after the latest change before flushing
+     * @param maxDelayMillis longest time a change may wait to be flushed
      */
-    private String serialise(Task t) {
-        assert t != null : "Cannot serialise a null task";
-        String done = t.isDone() ? "1" : "0";
+    public synchronized void enableWriteBehind(long debounceMillis, long maxDelayMillis) {
+        assert debounceMillis >= 0 && maxDelayMillis >= debounceMillis : "Invalid write-behind window";
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        if (writer != null) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "yin-storage-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "yin-storage-flush"));
+    }
 
-        if (t instanceof Todo) {
-            return String.join(" | ", "T", done, t.getDescription());
+    /**
+     * Turns printing of per-phase load timings to standard error on or off.
+     *
+     * @param isReporting true to print timings after every load
+     */
+    public void setReportingLoadStats(boolean isReporting) {
+        this.isReportingLoadStats = isReporting;
+    }
 
-        } else if (t instanceof Deadline) {
-            Deadline d = (Deadline) t;
-            String byStr = DateTimes.formatStorage(d.getBy());
-            assert byStr != null : "Deadline datetime format should not be null";
-            return String.join(" | ", "D", done, d.getDescription(), byStr);
+    /**
+     * Sets the format used for snapshots written from now on.
+     * Loading recognises either format regardless of this setting.
+     *
+     * @param format the snapshot format to write
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets how far snapshots and journal appends are forced to disk.
+     *
+     * @param durability the durability level
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+        archive.setDurability(durability);
+    }
+
+    /**
+     * Rewrites the data file in the given format, folding in any journal.
+     * Later snapshots are written in that format too.
+     *
+     * @param target the format to convert to
+     * @return the number of tasks converted
+     */
+    public int convert(Format target) {
+        List<Task> tasks = load();
+        setFormat(target);
+        save(tasks);
+        flush();
+        return tasks.size();
+    }
 
-        } else if (t instanceof Event) {
-            Event e = (Event) t;
-            String fromStr = DateTimes.formatStorage(e.getFrom());
-            String toStr = DateTimes.formatStorage(e.getTo());
-            assert fromStr != null && toStr != null
-                    : "Event datetime format should not be null";
-            return String.join(" | ", "E", done, e.getDescription(), fromStr, toStr);
+    /**
+     * Sets the data file size from which load() parses the file on several cores.
+     * Below it the file is read on the calling thread, which is faster for small files.
+     *
+     * @param bytes file size threshold in bytes
+     */
+    public void setParallelLoadThreshold(long bytes) {
+        this.parallelLoadThreshold = bytes;
+    }
+
+    /**
+     * Returns the timings and counts of the most recent load.
+     *
+     * @return stats of the last load
+     */
+    public LoadStats getLastLoadStats() {
+        return lastLoadStats;
+    }
+
+    /**
+     * Returns the next task id to hand out, above the id of every task saved so far, including
+     * deleted and archived ones. A TaskList created from load() should not go below it.
+     *
+     * @return the next id
+     */
+    public synchronized long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Raises the next task id to at least the given one.
+     *
+     * @param next an id that must not be handed out again, plus one
+     */
+    private synchronized void noteNextId(long next) {
+        nextId = Math.max(nextId, next);
+    }
+
+    /**
+     * Raises the next task id above the ids of the given tasks.
+     *
+     * @param tasks the tasks being saved
+     * @return the next id
+     */
+    private synchronized long noteNextId(List<Task> tasks) {
+        for (Task t : tasks) {
+            nextId = Math.max(nextId, t.getId() + 1);
+        }
+        return nextId;
+    }
+
+    /**
+     * Reads the epoch from a header line.
+     *
+     * @param line the first line of a snapshot or journal
+     * @return the epoch, or -1 if the line is not an epoch header
+     */
+    private static long parseEpoch(String line) {
+        if (!line.startsWith(EPOCH_PREFIX)) {
+            return -1;
+        }
+        int marker = line.indexOf(NEXT_ID_MARKER, EPOCH_PREFIX.length());
+        try {
+            return Long.parseLong(line.substring(EPOCH_PREFIX.length(), marker < 0 ? line.length() : marker).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the next task id from a snapshot header line.
+     *
+     * @param line the first line of a snapshot
+     * @return the next id, or -1 if the line does not record one
+     */
+    private static long parseNextId(String line) {
+        int marker = line.indexOf(NEXT_ID_MARKER);
+        if (!line.startsWith(EPOCH_PREFIX) || marker < 0) {
+            return -1;
         }
+        int end = line.indexOf(ARCHIVE_MARKER, marker);
+        if (end < 0) {
+            end = line.length();
+        }
+        try {
+            return Long.parseLong(line.substring(marker + NEXT_ID_MARKER.length(), end).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
-        return String.join(" | ", "T", done, t.getDescription());
+    /**
+     * Reads the archive token from a snapshot header line.
+     *
+     * @param line the first line of a snapshot
+     * @return the token, or 0 if the line does not record one
+     */
+    private static long parseArchiveToken(String line) {
+        int marker = line.indexOf(ARCHIVE_MARKER);
+        if (!line.startsWith(EPOCH_PREFIX) || marker < 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(line.substring(marker + ARCHIVE_MARKER.length()).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     /**
@@ -85,112 +344,723 @@ public class Storage {
      * they are created and an empty list is returned (first run behaviour).
      * Malformed lines are skipped.
      * Tasks marked as done in storage are marked accordingly in memory.
+     * Journal records written since the snapshot are replayed in order.
      *
      * @return a list of tasks loaded from the data file (possibly empty)
      */
     public List<Task> load() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingSnapshot = null;
+                pendingRecords = new ArrayList<>();
+                firstPendingAt = -1;
+                journalRecords = 0;
+                isSnapshotStale = false;
+                nextId = -1;
+            }
+            epoch = 0;
+            archiveToken = 0;
+            isJournalOpen = false;
+            return readAll();
+        }
+    }
+
+    /**
+     * Reads the snapshot and replays the journal. Binary snapshots are recognised by their
+     * leading magic bytes, whatever format is configured for writing. Small text files are
+     * streamed line by line through a buffered reader, so memory use beyond the tasks themselves
+     * does not grow with the file; files of at least parallelLoadThreshold bytes are parsed in
+     * parallel by a ChunkedLoader. Tasks saved without a stable id are given one before the journal
+     * is replayed, deterministically, so they get the same ids on every load until the next snapshot
+     * records them. The next id comes from the snapshot header, raised past every id loaded; data
+     * saved before the header recorded it counts the archived ids instead. Finally an archive
+     * interrupted by a crash is completed or undone, according to the archive token in the header.
+     *
+     * @return the tasks on disk
+     */
+    private List<Task> readAll() {
         List<Task> list = new ArrayList<>();
+        LoadStats stats = new LoadStats();
+        lastLoadStats = stats;
         try {
             ensureParentExists();
-            if (!Files.exists(file)) {
+            boolean isNew = !Files.exists(file);
+            if (isNew) {
                 Files.createFile(file);
-                return list;
+            } else if (BinarySnapshot.isBinary(file)) {
+                BinarySnapshot.Header header = BinarySnapshot.read(file, list, stats);
+                epoch = header.epoch;
+                archiveToken = header.archiveToken;
+                noteNextId(header.nextId);
+            } else if (Files.size(file) >= parallelLoadThreshold) {
+                list = readChunked(stats);
+            } else {
+                readSequential(list, stats);
             }
-            for (String line : Files.readAllLines(file)) {
-                String string = line.trim();
-                if (string.isEmpty()) {
-                    continue;
-                }
-                String[] p = string.split("\\s*\\|\\s*");
-                if (p.length < 3) {
-                    continue;
-                }
-                String type = p[0];
-                boolean done = "1".equals(p[1]);
-                String desc = p[2];
-
-                Task t;
-                switch (type) {
-                case "T":
-                    t = new Todo(desc);
-                    break;
-                case "D":
-                    if (p.length < 4) {
-                        continue;
-                    }
-                    LocalDateTime by = DateTimes.parseFlexible(p[3]);
-                    assert by != null : "Parsed deadline datetime should not be null";
-                    t = new Deadline(desc, by);
-                    break;
-                case "E":
-                    if (p.length < 5) {
-                        continue;
-                    }
-                    LocalDateTime from = DateTimes.parseFlexible(p[3]);
-                    LocalDateTime to = DateTimes.parseFlexible(p[4]);
-                    assert from != null && to != null
-                            : "Parsed event datetime should not be null";
-                    t = new Event(desc, from, to);
-                    break;
-                default:
-                    continue;
-                }
-                if (done) {
-                    t.mark();
-                }
-                list.add(t);
+            if (getNextId() < 0) {
+                noteNextId(archive.maxId() + 1);
+            }
+            if (!isNew) {
+                // Journalled adds already carry ids, numbered after these.
+                TaskList.assignIds(list, getNextId());
+                long replayStart = System.nanoTime();
+                replayJournal(list);
+                stats.addReplay(System.nanoTime() - replayStart);
             }
         } catch (IOException e) {
             System.err.println("Load failed: " + e.getMessage());
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             System.err.println("Load parse failed: " + e.getMessage());
         }
+        // Also covers a load that failed before the next id was known.
+        noteNextId(1);
+        noteNextId(list);
+        try {
+            archive.recover(archiveToken);
+        } catch (IOException e) {
+            System.err.println("Archive recovery failed: " + e.getMessage());
+        }
+        if (isReportingLoadStats) {
+            System.err.println(stats);
+        }
         return list;
     }
 
     /**
-     * Saves the given tasks to disk, overwriting the file contents.
+     * Streams the snapshot on the calling thread, reading READ_BLOCK_LINES lines at a time and
+     * then parsing them, so reading and parsing are each timed once per block, not per line.
+     *
+     * @param list receives the parsed tasks
+     * @param stats collects timings and counts
+     * @throws IOException if the file cannot be read
+     */
+    private void readSequential(List<Task> list, LoadStats stats) throws IOException {
+        try (BufferedReader in = newReader(file)) {
+            long t0 = System.nanoTime();
+            String line = in.readLine();
+            if (line != null && parseEpoch(line) >= 0) {
+                epoch = parseEpoch(line);
+                archiveToken = parseArchiveToken(line);
+                noteNextId(parseNextId(line));
+                line = in.readLine();
+            }
+            String[] block = new String[READ_BLOCK_LINES];
+            while (line != null) {
+                int count = 0;
+                do {
+                    block[count++] = line;
+                    line = in.readLine();
+                } while (line != null && count < block.length);
+                long t1 = System.nanoTime();
+                stats.addRead(t1 - t0);
+                for (int i = 0; i < count; i++) {
+                    Task t = TaskFormat.parse(block[i]);
+                    stats.countLine(t != null);
+                    if (t != null) {
+                        list.add(t);
+                    }
+                }
+                t0 = System.nanoTime();
+                stats.addParse(t0 - t1);
+            }
+            stats.addRead(System.nanoTime() - t0);
+        }
+    }
+
+    /**
+     * Parses the snapshot in newline-aligned chunks across cores.
+     *
+     * @param stats collects timings summed over all workers, and counts
+     * @return the parsed tasks in file order
+     * @throws IOException if the file cannot be read
+     */
+    private List<Task> readChunked(LoadStats stats) throws IOException {
+        try (ChunkedLoader loader = new ChunkedLoader(file)) {
+            long bodyStart = loader.nextLineStart(0);
+            String header = loader.read(0, bodyStart).trim();
+            long headerEpoch = parseEpoch(header);
+            if (headerEpoch >= 0) {
+                epoch = headerEpoch;
+                archiveToken = parseArchiveToken(header);
+                noteNextId(parseNextId(header));
+            } else {
+                bodyStart = 0;
+            }
+            return loader.parseFrom(bodyStart, stats);
+        }
+    }
+
+    /**
+     * Opens a UTF-8 reader with a large buffer over the given file.
+     *
+     * @param path the file to read
+     * @return a buffered reader
+     * @throws IOException if the file cannot be opened
+     */
+    private static BufferedReader newReader(Path path) throws IOException {
+        return new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns whether the file ends with a line terminator, i.e. its last record is complete.
+     *
+     * @param path the file to check
+     * @return true if the last byte is a newline, or the file is empty
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (SeekableByteChannel ch = Files.newByteChannel(path)) {
+            if (ch.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.position(ch.size() - 1);
+            ch.read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Applies the journal records of the current epoch to the loaded snapshot.
+     * A journal from another epoch is stale and is ignored. A trailing record without a
+     * line terminator was torn by a crash mid-append and is ignored as well.
+     *
+     * @param list the tasks read from the snapshot, updated in place
+     * @throws IOException if the journal cannot be read
+     */
+    private void replayJournal(List<Task> list) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        boolean isTorn = !endsWithNewline(journalFile);
+        try (BufferedReader in = newReader(journalFile)) {
+            String header = in.readLine();
+            if (header == null || parseEpoch(header) != epoch) {
+                return;
+            }
+            // Look one line ahead so a torn final record can be left out.
+            String record = in.readLine();
+            while (record != null) {
+                String next = in.readLine();
+                if (next != null || !isTorn) {
+                    replayRecord(record, list);
+                }
+                record = next;
+            }
+        }
+        if (isTorn) {
+            // Appending after a torn record would corrupt the next one; fold everything into a snapshot.
+            save(list);
+        } else {
+            isJournalOpen = true;
+        }
+    }
+
+    /**
+     * Applies a single journal record to the list.
+     * Records that cannot be parsed or refer to a missing index are skipped.
+     *
+     * @param record the journal record
+     * @param list the tasks to update in place
+     */
+    private void replayRecord(String record, List<Task> list) {
+        int bar = record.indexOf('|');
+        if (bar == -1) {
+            return;
+        }
+        synchronized (this) {
+            journalRecords++;
+        }
+        String op = record.substring(0, bar).trim();
+        if (op.equals("add")) {
+            Task t = TaskFormat.parse(record, bar + 1, record.length());
+            if (t != null) {
+                // A later record may delete it again, but its id stays used.
+                noteNextId(t.getId() + 1);
+                list.add(t);
+            }
+            return;
+        }
+        int index;
+        try {
+            index = Integer.parseInt(record.substring(bar + 1).trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (index < 0 || index >= list.size()) {
+            return;
+        }
+        switch (op) {
+        case "mark":
+            list.get(index).mark();
+            break;
+        case "unmark":
+            list.get(index).unmark();
+            break;
+        case "delete":
+            list.remove(index);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Saves the given tasks to disk as a new snapshot, overwriting the file contents,
+     * and starts an empty journal for the new epoch.
      * Creates the parent directory and data file if they do not already exist.
+     * In write-behind mode the snapshot is only queued, so the list must not be modified afterwards;
+     * TaskList.snapshot() gives one that is not.
      *
      * @param tasks the tasks to persist
      */
     public void save(List<Task> tasks) {
         assert tasks != null : "Tasks list to save must not be null";
-        try {
-            ensureParentExists();
-            List<String> lines = new ArrayList<>();
-            for (Task t : tasks) {
-                assert t != null : "Tasks list contains a null task";
-                lines.add(serialise(t));
+        synchronized (this) {
+            // A newer snapshot supersedes anything queued before it.
+            isSnapshotStale = false;
+            pendingSnapshot = tasks;
+            pendingRecords = new ArrayList<>();
+            journalRecords = 0;
+        }
+        afterChange();
+    }
+
+    /**
+     * Starts a batch: until endBatch(TaskList), changes are noted but not written.
+     */
+    public synchronized void beginBatch() {
+        isBatching = true;
+        isBatchDirty = false;
+    }
+
+    /**
+     * Ends a batch, writing one snapshot of the task list if anything changed during it,
+     * together with anything else queued, before returning.
+     *
+     * @param tasks the task list after the batch
+     */
+    public void endBatch(TaskList tasks) {
+        boolean isDirty;
+        synchronized (this) {
+            nextId = Math.max(nextId, tasks.getNextId());
+            isDirty = isBatchDirty || isSnapshotStale;
+            isBatching = false;
+            isBatchDirty = false;
+        }
+        if (isDirty) {
+            // Written by the flush below, before the list can change.
+            save(tasks.view());
+        }
+        flush();
+    }
+
+    /**
+     * Queues a snapshot of the changes a batch has made so far, for a step that needs them on
+     * disk before it goes on. Does nothing outside a batch. The snapshot is a view of the list,
+     * so the caller must flush() before the list changes again.
+     *
+     * @param tasks the current task list
+     */
+    private synchronized void queueBatchChanges(TaskList tasks) {
+        nextId = Math.max(nextId, tasks.getNextId());
+        if (isBatching && isBatchDirty) {
+            isSnapshotStale = false;
+            pendingSnapshot = tasks.view();
+            pendingRecords = new ArrayList<>();
+            journalRecords = 0;
+            isBatchDirty = false;
+        }
+    }
+
+    /**
+     * Records that a task was appended to the end of the list.
+     *
+     * @param task the task that was added
+     * @param tasks the task list after the addition, used if the journal needs compacting
+     */
+    public void recordAdded(Task task, TaskList tasks) {
+        appendRecord("add | " + TaskFormat.serialise(task), tasks);
+    }
+
+    /**
+     * Records that the task at the given index was marked as done.
+     *
+     * @param index zero-based index of the marked task
+     * @param tasks the task list after the change, used if the journal needs compacting
+     */
+    public void recordMarked(int index, TaskList tasks) {
+        appendRecord("mark | " + index, tasks);
+    }
+
+    /**
+     * Records that the task at the given index was marked as not done.
+     *
+     * @param index zero-based index of the unmarked task
+     * @param tasks the task list after the change, used if the journal needs compacting
+     */
+    public void recordUnmarked(int index, TaskList tasks) {
+        appendRecord("unmark | " + index, tasks);
+    }
+
+    /**
+     * Records that the task at the given index was deleted.
+     *
+     * @param index zero-based index the task had before it was deleted
+     * @param tasks the task list after the deletion, used if the journal needs compacting
+     */
+    public void recordDeleted(int index, TaskList tasks) {
+        appendRecord("delete | " + index, tasks);
+    }
+
+    /**
+     * Queues one journal record. Compacts the journal into a new snapshot instead
+     * once it would hold COMPACT_THRESHOLD records.
+     *
+     * @param record the journal record, without line terminator
+     * @param tasks the current task list, snapshotted if the journal is compacted
+     */
+    private void appendRecord(String record, TaskList tasks) {
+        boolean isCompacting;
+        synchronized (this) {
+            nextId = Math.max(nextId, tasks.getNextId());
+            if (isBatching) {
+                isBatchDirty = true;
+                return;
+            }
+            isCompacting = isSnapshotStale || journalRecords + 1 >= COMPACT_THRESHOLD;
+            if (!isCompacting) {
+                pendingRecords.add(record);
+                journalRecords++;
             }
-            Files.write(file, lines,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException e) {
-            System.err.println("Save failed: " + e.getMessage());
+        }
+        if (isCompacting) {
+            save(toSave(tasks));
+        } else {
+            afterChange();
         }
     }
 
     /**
-     * Appends the given tasks to the archive file, creating it if needed.
+     * Returns the tasks for a snapshot to be saved. A synchronous save is written before the
+     * list can change again, so it can read the list through a view; only one that is queued
+     * for the background writer needs a snapshot that later changes cannot affect.
      *
-     * @param tasks the tasks to append to the archive
-     * @throws YinException if an I/O error occurs while writing
+     * @param tasks the current task list
+     * @return a view or a snapshot of the tasks
+     */
+    private synchronized List<Task> toSave(TaskList tasks) {
+        return writer == null ? tasks.view() : tasks.snapshot();
+    }
+
+    /**
+     * Writes queued changes now, or schedules the write when in write-behind mode.
+     */
+    private void afterChange() {
+        synchronized (this) {
+            if (isBatching) {
+                // Written by endBatch(TaskList), or by the next flush() if one comes first.
+                return;
+            }
+            if (writer != null) {
+                long now = System.nanoTime();
+                if (firstPendingAt < 0) {
+                    firstPendingAt = now;
+                }
+                long due = Math.min(now + debounceNanos, firstPendingAt + maxDelayNanos);
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                }
+                scheduledFlush = writer.schedule(this::flush, due - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes all queued changes to disk: the pending snapshot first, if any,
+     * then the pending journal records in a single append.
      */
-    public void appendArchive(List<Task> tasks) throws YinException { // [NEW]
+    public void flush() {
+        synchronized (flushLock) {
+            List<Task> snapshot;
+            List<String> records;
+            synchronized (this) {
+                snapshot = pendingSnapshot;
+                records = pendingRecords;
+                pendingSnapshot = null;
+                pendingRecords = new ArrayList<>();
+                firstPendingAt = -1;
+            }
+            try {
+                ensureParentExists();
+                if (snapshot != null) {
+                    writeSnapshot(snapshot);
+                }
+                if (!records.isEmpty()) {
+                    writeJournal(records);
+                }
+            } catch (IOException e) {
+                System.err.println("Save failed: " + e.getMessage());
+                markSnapshotStale();
+            }
+        }
+    }
+
+    /**
+     * Makes the next change write a full snapshot, after a write left disk out of step with memory.
+     */
+    private synchronized void markSnapshotStale() {
+        isSnapshotStale = true;
+    }
+
+    /**
+     * Writes a snapshot for the next epoch and removes the journal of the previous one.
+     *
+     * @param tasks the tasks to write
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void writeSnapshot(List<Task> tasks) throws IOException {
+        writeSnapshot(tasks, archiveToken);
+    }
+
+    /**
+     * Writes a snapshot for the next epoch carrying the given archive token, which later
+     * snapshots carry too once this one is written.
+     *
+     * @param tasks the tasks to write
+     * @param token the archive token to record in the header, or 0 for none
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void writeSnapshot(List<Task> tasks, long token) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long next = noteNextId(tasks);
+        if (format == Format.BINARY) {
+            BinarySnapshot.write(temp, epoch + 1, next, token, tasks);
+        } else {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(EPOCH_PREFIX + (epoch + 1) + NEXT_ID_MARKER + next
+                        + (token == 0 ? "" : ARCHIVE_MARKER + token));
+                out.newLine();
+                for (Task t : tasks) {
+                    assert t != null : "Tasks list contains a null task";
+                    out.write(TaskFormat.serialise(t));
+                    out.newLine();
+                }
+            }
+        }
+        durability.replace(temp, file);
+        epoch++;
+        archiveToken = token;
+        isJournalOpen = false;
+        if (Files.deleteIfExists(journalFile)) {
+            durability.syncDirectory(journalFile);
+        }
+    }
+
+    /**
+     * Appends records to the journal, writing the epoch header first if the journal
+     * has not been started for this epoch.
+     *
+     * @param records the records to append, without line terminators
+     * @throws IOException if the journal cannot be written
+     */
+    private void writeJournal(List<String> records) throws IOException {
+        String nl = System.lineSeparator();
+        StringBuilder text = new StringBuilder();
+        if (!isJournalOpen) {
+            text.append(EPOCH_PREFIX).append(epoch).append(nl);
+        }
+        for (String record : records) {
+            text.append(record).append(nl);
+        }
+        StandardOpenOption mode = isJournalOpen
+                ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (FileChannel ch = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                ch.write(bytes);
+            }
+            if (durability != Durability.NONE) {
+                ch.force(false);
+            }
+        }
+        if (!isJournalOpen) {
+            durability.syncDirectory(journalFile);
+        }
+        isJournalOpen = true;
+    }
+
+    /**
+     * Moves tasks to the archive and saves the remaining active tasks, as one operation
+     * that a crash cannot leave half done. It runs in three steps:
+     * 1. write an intent file naming the tasks, a fresh archive token, and where the archive
+     *    currently ends (see Archive);
+     * 2. write a snapshot of the remaining tasks whose header carries that token;
+     * 3. append the tasks to the archive and delete the intent.
+     * Later snapshots carry the token on, so if a crash interrupts this, load() can tell from
+     * the header whether the snapshot of step 2 reached disk: if so it redoes step 3 from the
+     * recorded archive end, otherwise it discards the intent.
+     * Either way no task ends up both archived and active, or in neither place.
+     * Queued changes are superseded by the new snapshot and are not written separately.
+     *
+     * <p>An exception means the snapshot of step 2 did not reach disk, so the tasks are still
+     * active and the caller should keep them, and the intent is deleted. If the snapshot was
+     * written, the move stands: should step 3 then fail, it is reported and finished from the
+     * intent before the next archive, or by the next load.</p>
+     *
+     * @param archived the tasks to append to the archive, in order
+     * @param remaining the active tasks after removing the archived ones
+     * @throws YinException if an I/O error occurs before the tasks have left the active list
+     */
+    public void archive(List<Task> archived, List<Task> remaining) throws YinException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingSnapshot = null;
+                pendingRecords = new ArrayList<>();
+                firstPendingAt = -1;
+                journalRecords = 0;
+                isSnapshotStale = false;
+                isBatchDirty = false;
+            }
+            noteNextId(archived);
+            long token = newArchiveToken();
+            boolean isPrepared = false;
+            boolean isSnapshotWritten = false;
+            try {
+                ensureParentExists();
+                // An append left unfinished by an earlier failure; its intent must not be overwritten.
+                archive.recover(archiveToken);
+                archive.prepare(archived, token);
+                isPrepared = true;
+                writeSnapshot(remaining, token);
+                isSnapshotWritten = true;
+                archive.complete();
+            } catch (IOException e) {
+                if (!isSnapshotWritten) {
+                    markSnapshotStale();
+                    if (isPrepared) {
+                        discardIntent();
+                    }
+                    throw new YinException("Archiving failed: " + e.getMessage());
+                }
+                System.err.println("Archive append failed, to be retried: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a token for a new archive: nonzero, and not the token of the current snapshot.
+     *
+     * @return the token
+     */
+    private long newArchiveToken() {
+        long token;
+        do {
+            token = ThreadLocalRandom.current().nextLong();
+        } while (token == 0 || token == archiveToken);
+        return token;
+    }
+
+    /**
+     * Deletes the intent of an archive whose snapshot was not written. Should that fail, the
+     * intent is still harmless, as no snapshot carries its token.
+     */
+    private void discardIntent() {
         try {
-            ensureParentExists();
-            List<String> lines = new ArrayList<>();
-            for (Task t : tasks) {
-                lines.add(serialise(t));
-            }
-            Files.write(
-                    archiveFile,
-                    lines,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND
-            );
+            archive.discard();
         } catch (IOException e) {
-            throw new YinException("Archiving failed: " + e.getMessage());
+            System.err.println("Could not delete the archive intent: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Searches the archive for tasks whose description contains the keyword, streaming it
+     * from disk rather than loading it. Matches are reported as they are found.
+     *
+     * @param word the keyword to look for (case-insensitive)
+     * @param onMatch receives each matching task with its 1-based number in the archive
+     * @return the number of matches
+     * @throws YinException if the archive cannot be read
+     */
+    public int searchArchive(String word, ObjLongConsumer<Task> onMatch) throws YinException {
+        synchronized (flushLock) {
+            try {
+                return archive.search(word, onMatch);
+            } catch (IOException e) {
+                throw new YinException("Archive search failed: " + e.getMessage());
+            }
         }
     }
+
+    /**
+     * Moves an archived task back to the end of the active list. The active list is saved,
+     * and queued changes flushed, before the task is taken out of the archive, so a crash in
+     * between leaves the task in both places rather than in neither. If that save fails, the
+     * task is taken off the active list again and a snapshot without it supersedes whatever
+     * part of the save reached disk, so it stays archived only.
+     *
+     * <p>If taking the task out of the archive then fails, it is undone the same way when the
+     * archive is unchanged. Once the removal's intent is on disk, though, the removal can only
+     * go forward: the task is restored, the failure is reported, and the removal is finished from
+     * the intent before the next archive or unarchive, or by the next load.</p>
+     *
+     * @param number the task's 1-based number in the archive, as shown by archive find
+     * @param tasks the active task list, which receives the task
+     * @return the restored task
+     * @throws YinException if there is no such archived task or the archive cannot be updated
+     */
+    public Task unarchive(long number, TaskList tasks) throws YinException {
+        synchronized (flushLock) {
+            Task t;
+            try {
+                // An append left unfinished by a failed archive; the removal intent must not overwrite it.
+                archive.recover(archiveToken);
+                t = archive.read(number);
+            } catch (IOException e) {
+                throw new YinException("Unarchiving failed: " + e.getMessage());
+            }
+            if (t == null) {
+                throw new YinException("There is no archived task number " + number);
+            }
+            tasks.add(t);
+            recordAdded(t, tasks);
+            queueBatchChanges(tasks);
+            flush();
+            boolean isSaved;
+            synchronized (this) {
+                isSaved = !isSnapshotStale;
+            }
+            if (!isSaved) {
+                takeBack(tasks);
+                throw new YinException("Could not save the task list; the task is still archived");
+            }
+            try {
+                archive.remove(number);
+            } catch (IOException e) {
+                if (!archive.hasIntent()) {
+                    takeBack(tasks);
+                    throw new YinException("Could not update the archive; the task is still archived: "
+                            + e.getMessage());
+                }
+                System.err.println("Archive removal failed, to be retried: " + e.getMessage());
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Takes a task that could not be unarchived off the end of the active list again, and saves
+     * a snapshot without it that supersedes whatever was saved with it.
+     *
+     * @param tasks the active task list, whose last task is the one to take back
+     */
+    private void takeBack(TaskList tasks) {
+        tasks.remove(tasks.size() - 1);
+        save(tasks.view());
+        flush();
+    }
 }
@@ -16,6 +16,15 @@ public class Task implements Schedulable {
     /** Whether the task has been marked as done. */
     protected boolean isDone;
 
+    /** Lower-cased description, computed once so searches do not fold it on every comparison. */
+    private final String foldedDescription;
+
+    /** Stable id that commands can refer to the task by; 0 until a TaskList assigns one. */
+    private long id;
+
+    /** Position of the task in the order it was added to its TaskList; see getSequence(). */
+    private long sequence;
+
     /**
      * Creates a new task with the given description, initially not done.
      *
@@ -24,6 +33,7 @@ public class Task implements Schedulable {
     public Task(String description) {
         assert description != null : "Task description must not be null";
         this.description = description;
+        this.foldedDescription = description.toLowerCase();
         this.isDone = false;
     }
 
@@ -55,6 +65,15 @@ public class Task implements Schedulable {
         return description;
     }
 
+    /**
+     * Returns the description in lower case, as used for case-insensitive search.
+     *
+     * @return the lower-cased description
+     */
+    String getFoldedDescription() {
+        return foldedDescription;
+    }
+
     /**
      * Returns whether the task is marked as done.
      *
@@ -64,6 +83,44 @@ public class Task implements Schedulable {
         return isDone;
     }
 
+    /**
+     * Returns the stable id of this task. Unlike its position in the list, the id does not
+     * change when other tasks are deleted or archived, and it is saved with the task.
+     *
+     * @return the id, or 0 if none has been assigned yet
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of this task.
+     *
+     * @param id the id
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the sequence number the owning TaskList gave this task when it was added.
+     * Sequence numbers increase along the list, so they order tasks the way the list does.
+     *
+     * @return the sequence number
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the sequence number of this task.
+     *
+     * @param sequence the sequence number
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     /**
      * Indicates whether this task occurs on a specific date.
      * By default (for tasks without dates, e.g. Todo),
@@ -0,0 +1,318 @@
+package yin;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Converts tasks to and from the pipe-delimited line format used by Storage:
+ * T | 0|1 | description
+ * D | 0|1 | description | byDateTime
+ * E | 0|1 | description | fromDateTime | toDateTime
+ * followed by " | #id" once the task has a stable id. Readers that predate ids ignore the
+ * extra field, and lines without it load with no id. The id is only read from a line with
+ * exactly one field after the type's own, so a description that contains '|' cannot pass off
+ * part of itself as an id.
+ * Lines are parsed by a hand-written scanner rather than a regex split, so loading
+ * a large file does not allocate an array and a String for every field.
+ */
+final class TaskFormat {
+    /** Hidden constructor; this class should not be instantiated. */
+    private TaskFormat() {}
+
+    /**
+     * Serialises a Task into the storage line format.
+     *
+     * @param t the task to serialise
+     * @return a single-line, pipe-delimited representation of the task
+     */
+    static String serialise(Task t) {
+        assert t != null : "Cannot serialise a null task";
+        String line = serialiseFields(t);
+        return t.getId() > 0 ? line + " | #" + t.getId() : line;
+    }
+
+    /**
+     * Serialises the fields of a task other than its id.
+     *
+     * @param t the task to serialise
+     * @return the pipe-delimited fields
+     */
+    private static String serialiseFields(Task t) {
+        String done = t.isDone() ? "1" : "0";
+
+        if (t instanceof Todo) {
+            return String.join(" | ", "T", done, t.getDescription());
+
+        } else if (t instanceof Deadline) {
+            Deadline d = (Deadline) t;
+            String byStr = DateTimes.formatStorage(d.getBy());
+            assert byStr != null : "Deadline datetime format should not be null";
+            return String.join(" | ", "D", done, d.getDescription(), byStr);
+
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            String fromStr = DateTimes.formatStorage(e.getFrom());
+            String toStr = DateTimes.formatStorage(e.getTo());
+            assert fromStr != null && toStr != null
+                    : "Event datetime format should not be null";
+            return String.join(" | ", "E", done, e.getDescription(), fromStr, toStr);
+        }
+
+        return String.join(" | ", "T", done, t.getDescription());
+    }
+
+    /**
+     * Parses a whole line into a Task.
+     *
+     * @param line a line in the storage format
+     * @return the parsed task, or null if the line is blank or malformed
+     */
+    static Task parse(CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses the characters in [start, end) of the given sequence into a Task.
+     * Fields are split on '|' with the whitespace around each separator dropped, exactly as
+     * the earlier split("\\s*\\|\\s*") on the trimmed line did, including ignoring trailing
+     * empty fields. Lines with too few fields, an unknown type, or an unreadable date are skipped.
+     *
+     * @param s the characters to read from
+     * @param start index of the first character of the line
+     * @param end index just past the last character of the line, excluding the terminator
+     * @return the parsed task, or null if the line is blank or malformed
+     */
+    static Task parse(CharSequence s, int start, int end) {
+        // Same notion of blank as String.trim().
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        // Each field is held as a span, so no array is allocated per line.
+        long type = 0;
+        long status = 0;
+        long desc = 0;
+        long third = 0;
+        long fourth = 0;
+        long fifth = 0;
+        int fields = 0;
+        int nonEmptyFields = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && s.charAt(i) != '|') {
+                continue;
+            }
+            int a = fieldStart;
+            int b = i;
+            if (a > start) {
+                a = skipSpaces(s, a, b);
+            }
+            if (b < end) {
+                b = trimSpaces(s, a, b);
+            }
+            long field = span(a, b);
+            switch (fields) {
+            case 0:
+                type = field;
+                break;
+            case 1:
+                status = field;
+                break;
+            case 2:
+                desc = field;
+                break;
+            case 3:
+                third = field;
+                break;
+            case 4:
+                fourth = field;
+                break;
+            case 5:
+                fifth = field;
+                break;
+            default:
+                break;
+            }
+            fields++;
+            if (b > a) {
+                nonEmptyFields = fields;
+            }
+            fieldStart = i + 1;
+        }
+
+        if (nonEmptyFields < 3) {
+            return null;
+        }
+        boolean done = isChar(s, status, '1');
+        String description = s.subSequence(spanStart(desc), spanEnd(desc)).toString();
+
+        try {
+            Task t;
+            long id;
+            int idField;
+            if (isChar(s, type, 'T')) {
+                t = new Todo(description);
+                id = third;
+                idField = 3;
+            } else if (isChar(s, type, 'D')) {
+                if (nonEmptyFields < 4) {
+                    return null;
+                }
+                t = new Deadline(description, parseDate(s, third));
+                id = fourth;
+                idField = 4;
+            } else if (isChar(s, type, 'E')) {
+                if (nonEmptyFields < 5) {
+                    return null;
+                }
+                t = new Event(description, parseDate(s, third), parseDate(s, fourth));
+                id = fifth;
+                idField = 5;
+            } else {
+                return null;
+            }
+            if (done) {
+                t.mark();
+            }
+            if (nonEmptyFields == idField + 1) {
+                t.setId(parseId(s, spanStart(id), spanEnd(id)));
+            }
+            return t;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Packs the bounds of a field into one long.
+     *
+     * @param start index of the first character of the field
+     * @param end index just past the field
+     * @return the span
+     */
+    private static long span(int start, int end) {
+        return (long) start << 32 | end;
+    }
+
+    /**
+     * Returns the index of the first character of a span.
+     *
+     * @param span the span
+     * @return the start index
+     */
+    private static int spanStart(long span) {
+        return (int) (span >>> 32);
+    }
+
+    /**
+     * Returns the index just past the last character of a span.
+     *
+     * @param span the span
+     * @return the end index
+     */
+    private static int spanEnd(long span) {
+        return (int) span;
+    }
+
+    /**
+     * Parses a stored "#id" field.
+     *
+     * @param s the characters to read from
+     * @param start index of the first character of the field
+     * @param end index just past the field
+     * @return the id, or 0 if the field is not a valid id
+     */
+    private static long parseId(CharSequence s, int start, int end) {
+        if (end - start < 2 || end - start > 19 || s.charAt(start) != '#') {
+            return 0;
+        }
+        long id = 0;
+        for (int i = start + 1; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Parses a stored date-time field with the storage codec. Fields in any other format
+     * accepted from users, as a hand-edited file may hold, go through parseFlexible(String).
+     *
+     * @param s the characters to read from
+     * @param field span of the field
+     * @return the parsed date-time
+     * @throws DateTimeParseException if the field is not a date-time
+     */
+    private static LocalDateTime parseDate(CharSequence s, long field) {
+        int start = spanStart(field);
+        int end = spanEnd(field);
+        LocalDateTime dt = DateTimes.parseStorage(s, start, end);
+        if (dt == null) {
+            dt = DateTimes.parseFlexible(s.subSequence(start, end).toString());
+        }
+        assert dt != null : "Parsed datetime should not be null";
+        return dt;
+    }
+
+    /**
+     * Returns whether a field holds exactly the given single character.
+     *
+     * @param s the characters to read from
+     * @param field span of the field
+     * @param c the expected character
+     * @return true if the field is exactly c
+     */
+    private static boolean isChar(CharSequence s, long field, char c) {
+        int start = spanStart(field);
+        return spanEnd(field) - start == 1 && s.charAt(start) == c;
+    }
+
+    /**
+     * Returns the index of the first non-whitespace character in [start, end), or end.
+     *
+     * @param s the characters to read from
+     * @param start index to start from
+     * @param end index to stop at
+     * @return index of the first non-whitespace character
+     */
+    private static int skipSpaces(CharSequence s, int start, int end) {
+        while (start < end && isSpace(s.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the index just past the last non-whitespace character in [start, end), or start.
+     *
+     * @param s the characters to read from
+     * @param start index to stop at
+     * @param end index to start from, scanning backwards
+     * @return index just past the last non-whitespace character
+     */
+    private static int trimSpaces(CharSequence s, int start, int end) {
+        while (end > start && isSpace(s.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Returns whether c is whitespace in the regex sense of \s.
+     *
+     * @param c the character to test
+     * @return true if c is whitespace
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,36 @@
+package yin;
+
+/**
+ * A secondary index over the tasks of a TaskList, kept up to date as the list changes.
+ * TaskList notifies its indexes after every change. Tasks are added in increasing
+ * sequence order (see Task#getSequence()), which is also their order in the list.
+ */
+interface TaskIndex {
+    /**
+     * Called after a task was appended to the list.
+     *
+     * @param t the new task
+     */
+    void onAdd(Task t);
+
+    /**
+     * Called after a task was removed from the list.
+     *
+     * @param t the removed task
+     */
+    void onRemove(Task t);
+
+    /**
+     * Called after the list was emptied.
+     */
+    void onClear();
+
+    /**
+     * Called after a task in the list was marked or unmarked. Does nothing by default,
+     * for indexes that do not depend on whether tasks are done.
+     *
+     * @param t the task whose status may have changed
+     */
+    default void onStatusChange(Task t) {
+    }
+}
@@ -1,21 +1,73 @@
 package yin;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Stores a list of tasks and provides methods to add, remove,
  * mark, and unmark them.
  * This class is the memory model of the task collection.
- * It uses an ArrayList inside but only gives higher-level operations.
+ * It uses a SharedArrayList inside, a TreeList for O(log n) positional changes to large
+ * lists, or a ColumnarTaskList to hold many tasks in little memory, but only gives
+ * higher-level operations.
+ * Secondary indexes (see TaskIndex) are notified of every change, so searches
+ * do not have to scan the whole list.
  */
 public class TaskList {
-    /** Underlying storage for tasks. */
-    private final ArrayList<Task> list;
+    /** Structures that can hold the tasks in order. */
+    public enum Backing {
+        /** A SharedArrayList: fastest to read, but deleting shifts every later task. */
+        ARRAY,
+        /** A TreeList: O(log n) get, add and delete at any position. */
+        TREE,
+        /**
+         * A ColumnarTaskList: tasks kept in primitive columns and handed out as views, for the
+         * least memory per task. Searches and date queries scan the columns instead of using indexes.
+         */
+        COLUMNAR
+    }
+
+    /** Number of tasks from which a scan for a keyword is split across cores. */
+    static final int PARALLEL_SCAN_TASKS = 200_000;
+    /** Removing more than this fraction of the list at once rebuilds the indexes instead. */
+    private static final int BULK_REMOVE_DIVISOR = 4;
+    /** Order of tasks in the list. */
+    private static final Comparator<Task> BY_SEQUENCE = Comparator.comparingLong(Task::getSequence);
+
+    /** Underlying storage for tasks; a tree backing is replaced rather than changed in bulk. */
+    private List<Task> list;
+    /** The same list when it is columnar, otherwise null; see Backing.COLUMNAR. */
+    private final ColumnarTaskList columns;
+    /** Indexes kept in step with the list. */
+    private final List<TaskIndex> indexes = new ArrayList<>();
+    /** Trigram index used by find, built on the first search. */
+    private TrigramIndex trigramIndex = null;
+    /** Interval index used by date queries, built on the first query. */
+    private IntervalIndex intervalIndex = null;
+    /** Undone deadlines in due order, built on the first deadline query. */
+    private DeadlineIndex deadlineIndex = null;
+    /** Which positions hold done tasks, so status filters need not visit every task. */
+    private final BitList done = new BitList();
+    /** Sequence number for the next task added. */
+    private long nextSequence = 0;
+    /** Tasks by their stable id, unless the list is columnar and maps ids itself. */
+    private final Map<Long, Task> byId = new HashMap<>();
+    /** Id for the next task added without one. */
+    private long nextId = 1;
 
     /** Creates an empty task list. */
     public TaskList() {
-        this.list = new ArrayList<>();
+        this.list = new SharedArrayList<>();
+        this.columns = null;
     }
 
     /**
@@ -24,8 +76,141 @@ public class TaskList {
      * @param initial initial tasks to copy into this list
      */
     public TaskList(List<Task> initial) {
+        this(initial, Backing.ARRAY);
+    }
+
+    /**
+     * Creates a task list pre-populated with the given tasks, held in the given structure.
+     *
+     * @param initial initial tasks to copy into this list
+     * @param backing the structure to hold the tasks in
+     */
+    public TaskList(List<Task> initial, Backing backing) {
         assert initial != null : "Initial task list must not be null";
-        this.list = new ArrayList<>(initial);
+        assignIds(initial);
+        for (Task t : initial) {
+            t.setSequence(nextSequence++);
+            nextId = Math.max(nextId, t.getId() + 1);
+        }
+        switch (backing) {
+        case TREE:
+            this.list = new TreeList<>(initial);
+            break;
+        case COLUMNAR:
+            this.list = new ColumnarTaskList(initial);
+            break;
+        default:
+            this.list = new SharedArrayList<>(initial);
+            break;
+        }
+        this.columns = backing == Backing.COLUMNAR ? (ColumnarTaskList) list : null;
+        for (Task t : initial) {
+            if (columns == null) {
+                byId.put(t.getId(), t);
+            }
+            done.add(t.isDone());
+        }
+    }
+
+    /**
+     * Gives every task without an id, or with an id already used earlier in the list,
+     * a fresh id above all existing ones, in list order.
+     *
+     * @param tasks the tasks to check
+     * @return whether any task was given a new id
+     */
+    static boolean assignIds(List<Task> tasks) {
+        return assignIds(tasks, 1);
+    }
+
+    /**
+     * Gives every task without an id, or with an id already used earlier in the list,
+     * a fresh id above all existing ones and not below the given one, in list order.
+     *
+     * @param tasks the tasks to check
+     * @param nextId the lowest id that may be given out
+     * @return whether any task was given a new id
+     */
+    static boolean assignIds(List<Task> tasks, long nextId) {
+        long maxId = nextId - 1;
+        for (Task t : tasks) {
+            maxId = Math.max(maxId, t.getId());
+        }
+        Set<Long> seen = new HashSet<>();
+        boolean isChanged = false;
+        for (Task t : tasks) {
+            if (t.getId() <= 0 || !seen.add(t.getId())) {
+                t.setId(++maxId);
+                seen.add(maxId);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    /**
+     * Appends a task, giving it its sequence number and an unused id first, and adds it to
+     * the indexes.
+     *
+     * @param task the task to append
+     */
+    private void append(Task task) {
+        task.setSequence(nextSequence++);
+        boolean isTaken = columns != null ? columns.containsId(task.getId()) : byId.containsKey(task.getId());
+        if (task.getId() <= 0 || isTaken) {
+            task.setId(nextId);
+        }
+        nextId = Math.max(nextId, task.getId() + 1);
+        list.add(task);
+        done.add(task.isDone());
+        if (columns == null) {
+            byId.put(task.getId(), task);
+        }
+        for (TaskIndex index : indexes) {
+            index.onAdd(task);
+        }
+    }
+
+    /**
+     * Tells the indexes that a task was marked or unmarked.
+     *
+     * @param task the task
+     */
+    private void statusChanged(Task task) {
+        for (TaskIndex index : indexes) {
+            index.onStatusChange(task);
+        }
+    }
+
+    /**
+     * Removes a task that left the list from the indexes.
+     *
+     * @param task the task that was removed
+     */
+    private void removed(Task task) {
+        byId.remove(task.getId(), task);
+        for (TaskIndex index : indexes) {
+            index.onRemove(task);
+        }
+    }
+
+    /**
+     * Returns the id the next new task will get.
+     *
+     * @return the next id, above that of every task this list has held
+     */
+    public long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Makes sure ids below the given one are not handed out again, e.g. those of tasks deleted
+     * or archived before the list was loaded.
+     *
+     * @param next the lowest id new tasks may get
+     */
+    public void reserveIds(long next) {
+        nextId = Math.max(nextId, next);
     }
 
     /**
@@ -53,7 +238,7 @@ public class TaskList {
      * @param task the task to add
      */
     public void add(Task task) {
-        list.add(task);
+        append(task);
     }
 
     /**
@@ -63,26 +248,193 @@ public class TaskList {
      * @return the removed task
      */
     public Task remove(int index) {
-        return list.remove(index);
+        Task task = list.remove(index);
+        done.remove(index);
+        removed(task);
+        return task;
+    }
+
+    /**
+     * Returns the current position of the task with the given stable id.
+     * Tasks are kept in sequence order, so the position is found by binary search.
+     *
+     * @param id the task's id
+     * @return the zero-based index, or -1 if no task has that id
+     */
+    public int indexOf(long id) {
+        if (columns != null) {
+            return columns.indexOfId(id);
+        }
+        Task task = byId.get(id);
+        if (task == null) {
+            return -1;
+        }
+        int index = list instanceof TreeList
+                ? ((TreeList<Task>) list).search(task, BY_SEQUENCE)
+                : Collections.binarySearch(list, task, BY_SEQUENCE);
+        assert index >= 0 && list.get(index) == task : "Id map out of step with the list";
+        return index;
     }
 
     /**
      * Returns tasks which contains keyword in their descriptions (case-insensitive).
+     * Answered from a trigram index, built on the first search and kept up to date after that;
+     * keywords shorter than three characters fall back to a scan.
      *
      * @param word text to search for
      * @return list of matching tasks (may be empty)
      */
     public List<Task> find(String word) {
-        String w = word.toLowerCase();
+        if (columns != null) {
+            return scan(list, word.toLowerCase());
+        }
+        if (trigramIndex == null) {
+            trigramIndex = new TrigramIndex(list);
+            indexes.add(trigramIndex);
+        }
+        List<Task> matches = trigramIndex.find(word);
+        return matches != null ? matches : scan(list, word.toLowerCase());
+    }
+
+    /**
+     * Returns the tasks that occur on at least one day between the given dates, inclusive,
+     * in the sense of Schedulable#occursOn(LocalDate). Answered from an interval index,
+     * built on the first query and kept up to date after that.
+     *
+     * @param from the first day
+     * @param to the last day
+     * @return the matching tasks in list order (may be empty)
+     */
+    public List<Task> occurringBetween(LocalDate from, LocalDate to) {
+        assert !to.isBefore(from) : "Date range must not be reversed";
+        if (columns != null) {
+            return columns.occurringBetween(from.toEpochDay(), to.toEpochDay());
+        }
+        if (intervalIndex == null) {
+            intervalIndex = new IntervalIndex(list);
+            indexes.add(intervalIndex);
+        }
+        return intervalIndex.between(from, to);
+    }
+
+    /**
+     * Returns the deadlines that are not done and were due before the given time.
+     *
+     * @param now the current time
+     * @return the overdue deadlines, most overdue first
+     */
+    public List<Task> overdue(LocalDateTime now) {
+        if (columns != null) {
+            return columns.due(now, true, Integer.MAX_VALUE);
+        }
+        return deadlines().due(now, true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the next deadlines that are not done and are due at or after the given time.
+     *
+     * @param now the current time
+     * @param count the most deadlines to return
+     * @return the upcoming deadlines, soonest first
+     */
+    public List<Task> upcoming(LocalDateTime now, int count) {
+        if (columns != null) {
+            return columns.due(now, false, count);
+        }
+        return deadlines().due(now, false, count);
+    }
+
+    /**
+     * Returns the index of undone deadlines, building it on first use.
+     *
+     * @return the deadline index
+     */
+    private DeadlineIndex deadlines() {
+        if (deadlineIndex == null) {
+            deadlineIndex = new DeadlineIndex(list);
+            indexes.add(deadlineIndex);
+        }
+        return deadlineIndex;
+    }
+
+    /**
+     * Returns the tasks whose lower-cased description contains the keyword, in order.
+     * Comparisons use each task's precomputed folded description and allocate nothing;
+     * lists of at least PARALLEL_SCAN_TASKS tasks are split across cores.
+     *
+     * @param tasks the tasks to scan
+     * @param folded the lower-cased keyword
+     * @return the matching tasks, in the order of the input
+     */
+    static List<Task> scan(List<Task> tasks, String folded) {
+        return scan(tasks, folded, tasks.size() >= PARALLEL_SCAN_TASKS);
+    }
+
+    /**
+     * Returns the tasks whose lower-cased description contains the keyword, in order.
+     *
+     * @param tasks the tasks to scan
+     * @param folded the lower-cased keyword
+     * @param isParallel whether to split the scan across cores
+     * @return the matching tasks, in the order of the input
+     */
+    static List<Task> scan(List<Task> tasks, String folded, boolean isParallel) {
+        if (isParallel) {
+            // An ordered stream keeps the matches in list order.
+            return tasks.parallelStream()
+                    .filter(t -> t.getFoldedDescription().contains(folded))
+                    .collect(Collectors.toList());
+        }
         List<Task> out = new ArrayList<>();
-        for (Task task : list) {
-            if (task.getDescription().toLowerCase().contains(w)) {
+        for (Task task : tasks) {
+            if (task.getFoldedDescription().contains(folded)) {
                 out.add(task);
             }
         }
         return out;
     }
 
+    /**
+     * Returns the number of tasks marked as done, kept as a running count by the done bitmap.
+     *
+     * @return the number of done tasks
+     */
+    public int countDone() {
+        return done.cardinality();
+    }
+
+    /**
+     * Returns the tasks that are done, or those that are not, in list order. They are picked out
+     * by the done bitmap, so no other task is visited.
+     *
+     * @param isDone true for done tasks, false for those still to do
+     * @return a new list of the selected tasks
+     */
+    public List<Task> withStatus(boolean isDone) {
+        int[] positions = positionsWithStatus(isDone);
+        List<Task> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(list.get(position));
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the positions of the tasks that are done, or of those that are not,
+     * found from the done bitmap without visiting the tasks.
+     *
+     * @param isDone true for done tasks, false for those still to do
+     * @return the zero-based positions, in increasing order
+     */
+    public int[] positionsWithStatus(boolean isDone) {
+        int count = isDone ? countDone() : list.size() - countDone();
+        int[] positions = new int[count];
+        for (int i = 0, p = done.next(0, isDone); i < count; i++, p = done.next(p + 1, isDone)) {
+            positions[i] = p;
+        }
+        return positions;
+    }
+
     /**
      * Returns a shallow copy of the underlying task list.
      *
@@ -92,11 +444,113 @@ public class TaskList {
         return new ArrayList<>(list);
     }
 
+    /**
+     * Returns an unmodifiable view of the tasks, in O(1) for every backing. The view reads
+     * through to this list, so it must be used up before the list next changes; snapshot()
+     * gives one that may be kept.
+     *
+     * @return a read-only view of the tasks
+     */
+    public List<Task> view() {
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns an unmodifiable list of the tasks as they are now, which later changes to this
+     * list do not affect, so it can be handed to a background writer. This is O(1) for the array
+     * and tree backings: the tree shares its immutable nodes, and the array is shared until the
+     * first change other than an append, which then copies it once. A columnar backing is
+     * copied here, so callers that are done with the tasks before the list next changes should
+     * use view().
+     *
+     * <p>The snapshot holds the same Task objects, so marking or unmarking one later does show
+     * in it. Storage journals those changes as idempotent records, so a snapshot written with a
+     * newer status still replays to the right state.</p>
+     *
+     * @return the snapshot
+     */
+    public List<Task> snapshot() {
+        if (list instanceof TreeList) {
+            return ((TreeList<Task>) list).snapshot();
+        }
+        if (list instanceof SharedArrayList) {
+            return ((SharedArrayList<Task>) list).snapshot();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
     /**
      * Removes all tasks from the list.
      */
     public void clear() { // [NEW]
         list.clear();
+        done.clear();
+        byId.clear();
+        for (TaskIndex index : indexes) {
+            index.onClear();
+        }
+    }
+
+    /**
+     * Removes all tasks marked as done in a single pass, keeping the rest in order.
+     * The pass starts at the first done task found in the done bitmap, and returns at once
+     * if there is none.
+     *
+     * @return the removed tasks, in their original order
+     */
+    public List<Task> removeDone() {
+        int first = done.next(0, true);
+        if (first < 0) {
+            return new ArrayList<>();
+        }
+        if (columns != null) {
+            List<Task> removed = columns.removeDone();
+            done.reset(list.size());
+            return removed;
+        }
+        int before = list.size();
+        int doneCount = done.cardinality();
+        List<Task> removed = new ArrayList<>(doneCount);
+        if (list instanceof TreeList) {
+            // Rebuilding is O(n); setting each survivor would copy a path per task.
+            List<Task> kept = new ArrayList<>(before - doneCount);
+            int i = 0;
+            for (Task t : list) {
+                (done.get(i++) ? removed : kept).add(t);
+            }
+            list = new TreeList<>(kept);
+        } else {
+            int kept = first;
+            for (int i = first; i < before; i++) {
+                Task t = list.get(i);
+                if (done.get(i)) {
+                    removed.add(t);
+                } else {
+                    list.set(kept++, t);
+                }
+            }
+            list.subList(kept, before).clear();
+        }
+        done.reset(list.size());
+        for (Task t : removed) {
+            byId.remove(t.getId(), t);
+        }
+        if (removed.size() > before / BULK_REMOVE_DIVISOR) {
+            // Many single removals would cost more than indexing the survivors afresh.
+            for (TaskIndex index : indexes) {
+                index.onClear();
+                for (Task t : list) {
+                    index.onAdd(t);
+                }
+            }
+        } else {
+            for (Task t : removed) {
+                for (TaskIndex index : indexes) {
+                    index.onRemove(t);
+                }
+            }
+        }
+        return removed;
     }
 
     /**
@@ -107,7 +561,7 @@ public class TaskList {
      */
     public Task addTodo(String description) {
         Task task = new Todo(description);
-        list.add(task);
+        append(task);
         return task;
     }
 
@@ -120,7 +574,7 @@ public class TaskList {
      */
     public Task addDeadline(String description, java.time.LocalDateTime by) {
         Task task = new Deadline(description, by);
-        list.add(task);
+        append(task);
         return task;
     }
 
@@ -135,7 +589,7 @@ public class TaskList {
     public Task addEvent(String description, java.time.LocalDateTime from,
                          java.time.LocalDateTime to) {
         Task task = new Event(description, from, to);
-        list.add(task);
+        append(task);
         return task;
     }
 
@@ -149,6 +603,11 @@ public class TaskList {
         assert index >= 0 && index < list.size() : "Index out of bounds in mark()";
         Task task = list.get(index);
         task.mark();
+        done.set(index, true);
+        if (columns != null) {
+            columns.setDone(index, true);
+        }
+        statusChanged(task);
         return task;
     }
 
@@ -162,6 +621,11 @@ public class TaskList {
         assert index >= 0 && index < list.size() : "Index out of bounds in unmark()";
         Task task = list.get(index);
         task.unmark();
+        done.set(index, false);
+        if (columns != null) {
+            columns.setDone(index, false);
+        }
+        statusChanged(task);
         return task;
     }
 
@@ -173,6 +637,6 @@ public class TaskList {
      */
     public Task delete(int index) {
         assert index >= 0 && index < list.size() : "Index out of bounds in delete()";
-        return list.remove(index);
+        return remove(index);
     }
 }
@@ -0,0 +1,66 @@
+package yin;
+
+/**
+ * A reference to a task given by the user, either by its position in the list
+ * or by its stable id ("#7"). Positions shift as tasks are deleted or archived;
+ * ids do not.
+ */
+public final class TaskRef {
+    /** Zero-based position, or -1 if the task is referred to by id. */
+    private final int index0;
+    /** Stable id, or 0 if the task is referred to by position. */
+    private final long id;
+
+    /**
+     * Creates a reference.
+     *
+     * @param index0 zero-based position, or -1
+     * @param id stable id, or 0
+     */
+    private TaskRef(int index0, long id) {
+        this.index0 = index0;
+        this.id = id;
+    }
+
+    /**
+     * Returns a reference to the task at a position.
+     *
+     * @param index0 zero-based position
+     * @return the reference
+     */
+    public static TaskRef atPosition(int index0) {
+        return new TaskRef(index0, 0);
+    }
+
+    /**
+     * Returns a reference to the task with a stable id.
+     *
+     * @param id the task's id
+     * @return the reference
+     */
+    public static TaskRef withId(long id) {
+        return new TaskRef(-1, id);
+    }
+
+    /**
+     * Finds the referenced task's current position.
+     *
+     * @param tasks the task list
+     * @param invalidMessage message for a position that is out of range
+     * @return the zero-based position of the task
+     * @throws YinException if no task matches the reference
+     */
+    public int resolve(TaskList tasks, String invalidMessage) throws YinException {
+        if (id > 0) {
+            int index = tasks.indexOf(id);
+            if (index < 0) {
+                throw new YinException("There is no task #" + id);
+            }
+            return index;
+        }
+        if (index0 < 0 || index0 >= tasks.size()) {
+            throw new YinException(invalidMessage);
+        }
+        return index0;
+    }
+}
@@ -0,0 +1,371 @@
+package yin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a raw command line into spans in a single pass: the trimmed line, its first word
+ * (the command head), the rest of the line, and where the /by, /from and /to flags are.
+ * Positions are indexes into the original line, so Parser only builds the Strings a Command
+ * actually keeps.
+ *
+ * <p>Trimming follows String.trim() and collapsing follows replaceAll("\\s+", " ") on the
+ * trimmed text, so the results are the same as those of the String methods they replace.</p>
+ */
+final class Tokenizer {
+    private final String line;
+    /** Bounds of the line without leading and trailing characters up to ' '. */
+    private final int start;
+    private final int end;
+    /** Index just past the head, which ends at the first ' '. */
+    private final int headEnd;
+    /** Index of the first character of the tail after trimming, or end if it is empty. */
+    private final int bodyStart;
+    private final boolean isTailBlank;
+    private int byAt = -1;
+    private int fromAt = -1;
+    private int toAt = -1;
+
+    /**
+     * Reads a command line.
+     *
+     * @param line the raw line
+     */
+    Tokenizer(String line) {
+        this.line = line;
+        int from = 0;
+        int to = line.length();
+        while (from < to && line.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && line.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        start = from;
+        end = to;
+
+        int i = start;
+        while (i < end && line.charAt(i) != ' ') {
+            i++;
+        }
+        headEnd = i;
+        int firstInBody = -1;
+        boolean isBlank = true;
+        for (i = Math.min(headEnd + 1, end); i < end; i++) {
+            char c = line.charAt(i);
+            if (firstInBody < 0 && c > ' ') {
+                firstInBody = i;
+            }
+            if (isBlank && !Character.isWhitespace(c)) {
+                isBlank = false;
+            }
+            if (c == '/') {
+                readFlag(i);
+            }
+        }
+        bodyStart = firstInBody < 0 ? end : firstInBody;
+        isTailBlank = isBlank;
+    }
+
+    /**
+     * Records a flag starting at a '/'. Only the first /by and /from count, and only a /to
+     * at least five characters after that /from, as Parser has always searched for them.
+     *
+     * @param i index of the '/'
+     */
+    private void readFlag(int i) {
+        if (byAt < 0 && line.startsWith("/by", i)) {
+            byAt = i;
+        } else if (fromAt < 0 && line.startsWith("/from", i)) {
+            fromAt = i;
+        } else if (fromAt >= 0 && toAt < 0 && i >= fromAt + 5 && line.startsWith("/to", i)) {
+            toAt = i;
+        }
+    }
+
+    /**
+     * Returns whether the line holds nothing but characters up to ' '.
+     *
+     * @return true if the trimmed line is empty
+     */
+    boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * Returns the head in lower case. Known heads, typed in lower case, are returned as the
+     * constant itself without allocating.
+     *
+     * @param heads the heads to recognise, in lower case
+     * @return the lower-case head
+     */
+    String head(String... heads) {
+        int length = headEnd - start;
+        if (isPlainLowerCase(start, headEnd)) {
+            for (String head : heads) {
+                if (head.length() == length && line.startsWith(head, start)) {
+                    return head;
+                }
+            }
+            return line.substring(start, headEnd);
+        }
+        return line.substring(start, headEnd).toLowerCase();
+    }
+
+    /**
+     * Returns whether the trimmed line is exactly the given text.
+     *
+     * @param text the text to compare with
+     * @return true if they are equal
+     */
+    boolean isExactly(String text) {
+        return end - start == text.length() && line.startsWith(text, start);
+    }
+
+    /**
+     * Returns whether the tail, everything after the first ' ', is blank in the sense of
+     * String.isBlank().
+     *
+     * @return true if the tail is blank
+     */
+    boolean isTailBlank() {
+        return isTailBlank;
+    }
+
+    /**
+     * Returns whether the trimmed tail, with its whitespace collapsed and in lower case, is
+     * the given word.
+     *
+     * @param word a word in lower case, without whitespace
+     * @return true if the tail is that word
+     */
+    boolean isTail(String word) {
+        for (int i = bodyStart; i < end; i++) {
+            if (isRegexSpace(line.charAt(i))) {
+                return false;
+            }
+        }
+        if (isPlainLowerCase(bodyStart, end)) {
+            return end - bodyStart == word.length() && line.startsWith(word, bodyStart);
+        }
+        return line.substring(bodyStart, end).toLowerCase().equals(word);
+    }
+
+    /**
+     * Returns the trimmed tail.
+     *
+     * @return the tail without leading and trailing spaces
+     */
+    String body() {
+        return line.substring(bodyStart, end);
+    }
+
+    /**
+     * Returns the line the spans index into.
+     *
+     * @return the raw line
+     */
+    String line() {
+        return line;
+    }
+
+    /**
+     * Returns the index of the first character of the trimmed tail.
+     *
+     * @return the index, or end() if the tail is empty
+     */
+    int bodyStart() {
+        return bodyStart;
+    }
+
+    /**
+     * Returns the index just past the trimmed line.
+     *
+     * @return the index
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * Returns the index just past the first word of the trimmed tail, which ends at the first
+     * whitespace character, as words() splits it.
+     *
+     * @return the index, or end() if the tail is a single word
+     */
+    int firstWordEnd() {
+        int i = bodyStart;
+        while (i < end && !isRegexSpace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns where the first /by in the tail starts.
+     *
+     * @return the index, or -1 if there is none
+     */
+    int byAt() {
+        return byAt;
+    }
+
+    /**
+     * Returns where the first /from in the tail starts.
+     *
+     * @return the index, or -1 if there is none
+     */
+    int fromAt() {
+        return fromAt;
+    }
+
+    /**
+     * Returns where the first /to after the first /from starts.
+     *
+     * @return the index, or -1 if there is none
+     */
+    int toAt() {
+        return toAt;
+    }
+
+    /**
+     * Returns whether a span holds nothing once trimmed.
+     *
+     * @param from index of the first character
+     * @param to index just past the span
+     * @return true if every character is at most ' '
+     */
+    boolean isEmpty(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a span trimmed.
+     *
+     * @param from index of the first character
+     * @param to index just past the span
+     * @return the trimmed text
+     */
+    String trimmed(int from, int to) {
+        return collapse(line, from, to, false);
+    }
+
+    /**
+     * Returns a span trimmed and with each run of whitespace replaced by one space.
+     *
+     * @param from index of the first character
+     * @param to index just past the span
+     * @return the collapsed text
+     */
+    String collapsed(int from, int to) {
+        return collapse(line, from, to, true);
+    }
+
+    /**
+     * Returns the words of the trimmed tail, as split("\\s+") would.
+     *
+     * @return the words, or a single empty word if the tail is empty
+     */
+    String[] words() {
+        List<String> words = new ArrayList<>();
+        int i = bodyStart;
+        do {
+            int wordStart = i;
+            while (i < end && !isRegexSpace(line.charAt(i))) {
+                i++;
+            }
+            words.add(line.substring(wordStart, i));
+            while (i < end && isRegexSpace(line.charAt(i))) {
+                i++;
+            }
+        } while (i < end);
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Trims a string and replaces each run of whitespace in it by one space, as
+     * s.trim().replaceAll("\\s+", " ") does. A string that is already in that form is
+     * returned as it is.
+     *
+     * @param s the string
+     * @return the collapsed string
+     */
+    static String collapseSpaces(String s) {
+        return collapse(s, 0, s.length(), true);
+    }
+
+    /**
+     * Trims a span and optionally collapses its whitespace, copying only what changes.
+     *
+     * @param s the characters to read from
+     * @param from index of the first character
+     * @param to index just past the span
+     * @param isCollapsing whether to collapse runs of whitespace
+     * @return the resulting text
+     */
+    private static String collapse(String s, int from, int to, boolean isCollapsing) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int firstChange = to;
+        if (isCollapsing) {
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (isRegexSpace(c) && (c != ' ' || isRegexSpace(s.charAt(i + 1)))) {
+                    firstChange = i;
+                    break;
+                }
+            }
+        }
+        if (firstChange == to) {
+            return s.substring(from, to);
+        }
+        StringBuilder out = new StringBuilder(to - from);
+        out.append(s, from, firstChange);
+        for (int i = firstChange; i < to; i++) {
+            char c = s.charAt(i);
+            if (!isRegexSpace(c)) {
+                out.append(c);
+            } else if (!isRegexSpace(s.charAt(i - 1))) {
+                out.append(' ');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns whether toLowerCase() leaves a span as it is in every locale: it has no upper-case
+     * ASCII letters and nothing outside ASCII.
+     *
+     * @param from index of the first character
+     * @param to index just past the span
+     * @return true if the span is already in lower case
+     */
+    private boolean isPlainLowerCase(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a character is whitespace to the regex \s.
+     *
+     * @param c the character
+     * @return true for space, tab, line feed, vertical tab, form feed and carriage return
+     */
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
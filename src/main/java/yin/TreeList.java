@@ -0,0 +1,333 @@
+package yin;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A list backed by a balanced tree ordered by position, so get, set, add and remove at any
+ * index take O(log n) expected time instead of shifting the elements after it.
+ *
+ * <p>The tree is a randomized binary search tree keyed implicitly by position: every node
+ * records the size of its subtree, and joins pick which side becomes the root with
+ * probability proportional to its size. That keeps the tree balanced in expectation
+ * whatever its shape when built, so a list can be built perfectly balanced in O(n).</p>
+ *
+ * <p>Nodes are never changed once built: an update copies the O(log n) nodes on its path and
+ * shares the rest. snapshot() can therefore hand out the current tree in O(1), and the
+ * snapshot stays unchanged, and safe to read from another thread, as the list changes.</p>
+ *
+ * @param <E> the element type
+ */
+final class TreeList<E> extends AbstractList<E> {
+    /** Source of balancing decisions; seeded so the tree shape is reproducible. */
+    private final Random random = new Random(0);
+    private Node<E> root = null;
+
+    /** An element with its subtrees and the size of its subtree; immutable. */
+    private static final class Node<E> {
+        private final E value;
+        private final int size;
+        private final Node<E> left;
+        private final Node<E> right;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /** Creates an empty list. */
+    TreeList() {}
+
+    /**
+     * Creates a list sharing an existing tree.
+     *
+     * @param root the root of the tree
+     */
+    private TreeList(Node<E> root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a list holding the given elements in iteration order.
+     *
+     * @param elements the initial elements
+     */
+    TreeList(Collection<? extends E> elements) {
+        @SuppressWarnings("unchecked")
+        E[] values = (E[]) elements.toArray();
+        root = build(values, 0, values.length);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        return nodeAt(index).value;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = get(index);
+        root = setAt(root, index, element);
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<E>[] parts = split(root, index);
+        root = join(join(parts[0], new Node<>(element, null, null)), parts[1]);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = get(index);
+        root = removeAt(root, index);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        Node<E>[] tail = split(root, toIndex);
+        Node<E>[] head = split(tail[0], fromIndex);
+        root = join(head[0], tail[1]);
+        modCount++;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrder();
+    }
+
+    /**
+     * Returns an unmodifiable list of the current elements in O(1). It shares the tree with
+     * this list, and later changes to this list do not show in it.
+     *
+     * @return the snapshot
+     */
+    List<E> snapshot() {
+        return Collections.unmodifiableList(new TreeList<>(root));
+    }
+
+    /**
+     * Finds an element in a list sorted by the given comparator, descending the tree
+     * directly rather than through get(int) at every step.
+     *
+     * @param key the element to look for
+     * @param order the order the list is sorted in
+     * @return the index of a matching element, or -1 if there is none
+     */
+    int search(E key, Comparator<? super E> order) {
+        Node<E> node = root;
+        int before = 0;
+        while (node != null) {
+            int c = order.compare(key, node.value);
+            if (c == 0) {
+                return before + size(node.left);
+            } else if (c < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the node at a position.
+     *
+     * @param index zero-based position
+     * @return the node
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    private Node<E> nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Builds a perfectly balanced subtree from a slice of an array.
+     *
+     * @param values the elements
+     * @param from first index of the slice
+     * @param to end of the slice, exclusive
+     * @return the subtree root, or null for an empty slice
+     */
+    private static <E> Node<E> build(E[] values, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node<>(values[mid], build(values, from, mid), build(values, mid + 1, to));
+    }
+
+    /**
+     * Replaces the element at a position in a subtree, copying the nodes on the way.
+     *
+     * @param node the subtree
+     * @param index position within the subtree
+     * @param element the new element
+     * @return the new root of the subtree
+     */
+    private static <E> Node<E> setAt(Node<E> node, int index, E element) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return new Node<>(node.value, setAt(node.left, index, element), node.right);
+        } else if (index > leftSize) {
+            return new Node<>(node.value, node.left, setAt(node.right, index - leftSize - 1, element));
+        }
+        return new Node<>(element, node.left, node.right);
+    }
+
+    /**
+     * Removes the element at a position from a subtree, copying the nodes on the way.
+     *
+     * @param node the subtree
+     * @param index position within the subtree
+     * @return the new root of the subtree
+     */
+    private Node<E> removeAt(Node<E> node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return new Node<>(node.value, removeAt(node.left, index), node.right);
+        } else if (index > leftSize) {
+            return new Node<>(node.value, node.left, removeAt(node.right, index - leftSize - 1));
+        }
+        return join(node.left, node.right);
+    }
+
+    /**
+     * Splits a subtree into its first count elements and the rest, copying the nodes on the cut.
+     *
+     * @param node the subtree
+     * @param count number of elements to put in the first part
+     * @return the two parts, either of which may be null
+     */
+    private Node<E>[] split(Node<E> node, int count) {
+        @SuppressWarnings("unchecked")
+        Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+        if (node == null) {
+            return parts;
+        }
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            Node<E>[] sub = split(node.left, count);
+            parts[0] = sub[0];
+            parts[1] = new Node<>(node.value, sub[1], node.right);
+        } else {
+            Node<E>[] sub = split(node.right, count - leftSize - 1);
+            parts[0] = new Node<>(node.value, node.left, sub[0]);
+            parts[1] = sub[1];
+        }
+        return parts;
+    }
+
+    /**
+     * Joins two subtrees, all of whose elements in a come before those in b. The root is
+     * taken from either side with probability proportional to its size.
+     *
+     * @param a the first subtree
+     * @param b the second subtree
+     * @return the joined subtree
+     */
+    private Node<E> join(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (random.nextInt(a.size + b.size) < a.size) {
+            return new Node<>(a.value, a.left, join(a.right, b));
+        }
+        return new Node<>(b.value, join(a, b.left), b.right);
+    }
+
+    /**
+     * Returns the number of elements in a subtree.
+     *
+     * @param node the subtree, possibly null
+     * @return its size
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /** Walks the tree in order with an explicit stack, O(1) amortised per element. */
+    private final class InOrder implements Iterator<E> {
+        private final Deque<Node<E>> path = new ArrayDeque<>();
+        private final int expectedModCount = modCount;
+
+        InOrder() {
+            descendLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = path.pop();
+            descendLeft(node.right);
+            return node.value;
+        }
+
+        /**
+         * Pushes a node and its chain of left children.
+         *
+         * @param node the node to start from, possibly null
+         */
+        private void descendLeft(Node<E> node) {
+            for (; node != null; node = node.left) {
+                path.push(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package yin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from the trigrams (runs of three characters) of lower-cased task descriptions to the
+ * tasks containing them. Each posting list is kept in sequence order, which is list order.
+ *
+ * <p>Any description that contains the keyword contains every trigram of the keyword, so
+ * intersecting those trigrams' posting lists gives a small candidate set that is then checked
+ * with a plain substring test. This keeps the exact semantics of a scan. Keywords shorter
+ * than three characters have no trigrams and are left to the caller to scan.</p>
+ *
+ * <p>Removing a task leaves it in its posting lists as a tombstone, since taking it out would
+ * shift the rest of each list, and common trigrams are shared by most tasks. A posting list is
+ * compacted once tombstones make up half of it, so removal costs amortised O(1) per trigram.</p>
+ */
+final class TrigramIndex implements TaskIndex {
+    private static final Comparator<Task> BY_SEQUENCE = Comparator.comparingLong(Task::getSequence);
+
+    /** Tasks containing each trigram, in sequence order, including removed ones. */
+    private final Map<Long, Posting> postings = new HashMap<>();
+    /** Removed tasks still in posting lists, with the number of lists they are still in. */
+    private final Map<Task, Integer> tombstones = new IdentityHashMap<>();
+
+    /** The tasks containing one trigram. */
+    private static final class Posting {
+        /** The tasks, in sequence order, including removed ones. */
+        final ArrayList<Task> tasks = new ArrayList<>();
+        /** How many of the tasks have been removed. */
+        int removed = 0;
+    }
+
+    /**
+     * Creates an index over the given tasks.
+     *
+     * @param tasks the tasks, in list order
+     */
+    TrigramIndex(List<Task> tasks) {
+        for (Task t : tasks) {
+            onAdd(t);
+        }
+    }
+
+    @Override
+    public void onAdd(Task t) {
+        Set<Long> taskTrigrams = trigrams(t.getFoldedDescription());
+        if (tombstones.containsKey(t)) {
+            // Added back under a new sequence number, so its old entries must go first.
+            for (long trigram : taskTrigrams) {
+                compact(trigram);
+            }
+        }
+        for (long trigram : taskTrigrams) {
+            postings.computeIfAbsent(trigram, k -> new Posting()).tasks.add(t);
+        }
+    }
+
+    @Override
+    public void onRemove(Task t) {
+        Set<Long> taskTrigrams = trigrams(t.getFoldedDescription());
+        if (taskTrigrams.isEmpty() || tombstones.containsKey(t)) {
+            return;
+        }
+        // Counted in full before any list is compacted, which counts it down again.
+        tombstones.put(t, taskTrigrams.size());
+        for (long trigram : taskTrigrams) {
+            Posting posting = postings.get(trigram);
+            posting.removed++;
+            if (posting.removed * 2 >= posting.tasks.size()) {
+                compact(trigram);
+            }
+        }
+    }
+
+    @Override
+    public void onClear() {
+        postings.clear();
+        tombstones.clear();
+    }
+
+    /**
+     * Drops the removed tasks from a posting list, and the list itself if nothing is left.
+     *
+     * @param trigram the trigram whose posting list to compact
+     */
+    private void compact(long trigram) {
+        Posting posting = postings.get(trigram);
+        if (posting == null || posting.removed == 0) {
+            return;
+        }
+        posting.tasks.removeIf(t -> {
+            Integer lists = tombstones.get(t);
+            if (lists == null) {
+                return false;
+            }
+            if (lists == 1) {
+                tombstones.remove(t);
+            } else {
+                tombstones.put(t, lists - 1);
+            }
+            return true;
+        });
+        posting.removed = 0;
+        if (posting.tasks.isEmpty()) {
+            postings.remove(trigram);
+        }
+    }
+
+    /**
+     * Returns the tasks whose lower-cased description contains the lower-cased keyword.
+     *
+     * @param word the keyword
+     * @return the matching tasks in list order, or null if the keyword is shorter than a trigram
+     *         and the caller should scan instead
+     */
+    List<Task> find(String word) {
+        String w = word.toLowerCase();
+        if (w.length() < 3) {
+            return null;
+        }
+        List<ArrayList<Task>> lists = new ArrayList<>();
+        for (long trigram : trigrams(w)) {
+            Posting posting = postings.get(trigram);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            lists.add(posting.tasks);
+        }
+        // Start from the rarest trigram so the candidate set is small from the outset.
+        lists.sort(Comparator.comparingInt(List::size));
+        List<Task> candidates = new ArrayList<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates = intersect(candidates, lists.get(i));
+        }
+        if (!tombstones.isEmpty()) {
+            candidates.removeIf(tombstones::containsKey);
+        }
+        return TaskList.scan(candidates, w);
+    }
+
+    /**
+     * Intersects a small sequence-ordered list with a larger one by binary search.
+     *
+     * @param small the candidates so far, in sequence order
+     * @param large a posting list, in sequence order
+     * @return the candidates that are also in the posting list, in sequence order
+     */
+    private static List<Task> intersect(List<Task> small, List<Task> large) {
+        List<Task> out = new ArrayList<>(small.size());
+        int from = 0;
+        for (Task t : small) {
+            int i = Collections.binarySearch(large.subList(from, large.size()), t, BY_SEQUENCE);
+            if (i >= 0) {
+                out.add(t);
+                from += i + 1;
+            } else {
+                from += -i - 1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the distinct trigrams of lower-cased text, each packed into a long.
+     *
+     * @param text the text
+     * @return the trigrams, without repeats
+     */
+    static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
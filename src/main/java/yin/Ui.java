@@ -1,5 +1,10 @@
 package yin;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.util.List;
 
 /**
@@ -8,6 +13,8 @@ import java.util.List;
  * This class centralises console output so presentation logic
  * is kept separate from command execution.
  * It prints standard lines, headings, and task confirmations.
+ * By default it prints straight to System.out; buffered() gives one that collects output
+ * until flushOutput() for runs whose input is not a terminal.
  */
 public class Ui {
     /** Two space left indentation used for all console lines. */
@@ -15,25 +22,79 @@ public class Ui {
     /** Horizontal divider used to frame sections of output. */
     private static final String LINE =
             "____________________________________________________________";
+    /** Size in bytes of the output buffer of buffered(). */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Stream all output is printed to. */
+    private final PrintStream out;
+
+    /**
+     * Creates a Ui that prints to System.out.
+     */
+    public Ui() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a Ui that prints to the given stream.
+     *
+     * @param out the stream to print to
+     */
+    Ui(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a Ui for standard output that only writes when its buffer fills or flushOutput()
+     * is called, instead of on every line. It encodes text with the same charset as System.out,
+     * so the bytes written are the same.
+     *
+     * @return the buffered Ui
+     */
+    public static Ui buffered() {
+        String encoding = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        Charset charset = Charset.defaultCharset();
+        if (encoding != null && Charset.isSupported(encoding)) {
+            charset = Charset.forName(encoding);
+        }
+        BufferedOutputStream stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BUFFER_SIZE);
+        return new Ui(new PrintStream(stdout, false, charset));
+    }
+
+    /**
+     * Writes out anything buffered, e.g. before waiting for the next command.
+     */
+    public void flushOutput() {
+        out.flush();
+    }
+
+    /**
+     * Prints a line of text as it is, e.g. a summary outside the chat.
+     *
+     * @param text the text to print
+     */
+    public void showMessage(String text) {
+        out.println(text);
+    }
 
     /**
      * Prints a horizontal divider line with indentation.
      */
     public void showLine() {
-        System.out.println(INDENT + LINE);
+        out.println(INDENT + LINE);
     }
 
     /** Prints the welcome banner shown at application start. */
     public void showWelcome() {
         showLine();
-        System.out.println("Hello! I'm Yin.\nHow can I be of assistance?");
+        out.println("Hello! I'm Yin.\nHow can I be of assistance?");
         showLine();
     }
 
     /** Prints the exit message shown before terminating the app. */
     public void showExit() {
         showLine();
-        System.out.println("See you later alligator.");
+        out.println("See you later alligator.");
         showLine();
     }
 
@@ -45,7 +106,7 @@ public class Ui {
     public void showError(String msg) {
         assert msg != null : "Error message must not be null";
         showLine();
-        System.out.println(msg);
+        out.println(msg);
         showLine();
     }
 
@@ -58,8 +119,8 @@ public class Ui {
     public void showAdded(Task t, int size) {
         assert t != null : "Added task must not be null";
         showLine();
-        System.out.println("I've added this task:\n" + t);
-        System.out.println("\nNow you have " + size + " tasks in the list.");
+        out.println("I've added this task:\n" + t);
+        out.println("\nNow you have " + size + " tasks in the list.");
         showLine();
     }
 
@@ -72,8 +133,8 @@ public class Ui {
     public void showRemoved(Task t, int size) {
         assert t != null : "Removed task must not be null";
         showLine();
-        System.out.println("I've removed this task:\n" + t);
-        System.out.println("\nNow you have " + size + " tasks in the list.");
+        out.println("I've removed this task:\n" + t);
+        out.println("\nNow you have " + size + " tasks in the list.");
         showLine();
     }
 
@@ -83,14 +144,50 @@ public class Ui {
      * @param tasks tasks to display, in display order
      */
     public void showList(List<Task> tasks) {
+        showList(tasks, false);
+    }
+
+    /**
+     * Prints all tasks in the list, optionally with each task's stable id
+     * (e.g. "1.#7 [T][ ] read book").
+     *
+     * @param tasks the list of tasks to display
+     * @param isShowingIds whether to print each task's id after its position
+     */
+    public void showList(List<Task> tasks, boolean isShowingIds) {
         assert tasks != null : "Tasks list must not be null";
         showLine();
         if (tasks.isEmpty()) {
-            System.out.println("There are no tasks in the list.");
+            out.println("There are no tasks in the list.");
         } else {
-            System.out.println("Here are the tasks in your list:");
+            out.println("Here are the tasks in your list:");
             for (int i = 0; i < tasks.size(); i++) {
-                System.out.println("    " + (i + 1) + "." + tasks.get(i));
+                Task t = tasks.get(i);
+                out.println("    " + (i + 1) + "." + (isShowingIds ? "#" + t.getId() + " " : "") + t);
+            }
+        }
+        showLine();
+    }
+
+    /**
+     * Prints the tasks that are done, or those still to do, numbered by their positions
+     * in the full list so they can be marked or deleted by number.
+     *
+     * @param tasks the selected tasks, in list order
+     * @param positions the zero-based position of each task in the full list
+     * @param isDone whether these are the done tasks rather than those still to do
+     */
+    public void showWithStatus(List<Task> tasks, int[] positions, boolean isDone) {
+        assert tasks != null && tasks.size() == positions.length : "Each task needs its position";
+        showLine();
+        if (tasks.isEmpty()) {
+            out.println(isDone ? "No tasks are done yet." : "Nothing left to do!");
+        } else {
+            out.println(isDone
+                    ? "Here are the " + tasks.size() + " done task(s) in your list:"
+                    : "Here are the " + tasks.size() + " task(s) still to do:");
+            for (int i = 0; i < tasks.size(); i++) {
+                out.println("    " + (positions[i] + 1) + "." + tasks.get(i));
             }
         }
         showLine();
@@ -104,8 +201,8 @@ public class Ui {
     public void showMarked(Task t) {
         assert t != null : "Marked task must not be null";
         showLine();
-        System.out.println("Solid, I've marked this task as done:");
-        System.out.println("      " + t);
+        out.println("Solid, I've marked this task as done:");
+        out.println("      " + t);
         showLine();
     }
 
@@ -117,8 +214,8 @@ public class Ui {
     public void showUnmarked(Task t) {
         assert t != null : "Unmarked task must not be null";
         showLine();
-        System.out.println("I've marked this task as not done yet:");
-        System.out.println("      " + t);
+        out.println("I've marked this task as not done yet:");
+        out.println("      " + t);
         showLine();
     }
 
@@ -131,13 +228,13 @@ public class Ui {
         assert matches != null : "Matches list must not be null";
         showLine();
         if (matches.isEmpty()) {
-            System.out.println("No matches found.");
+            out.println("No matches found.");
             showLine();
             return;
         }
-        System.out.println("Here are the matching tasks in your list:");
+        out.println("Here are the matching tasks in your list:");
         for (int i = 0; i < matches.size(); i++) {
-            System.out.println("    " + (i + 1) + "." + matches.get(i));
+            out.println("    " + (i + 1) + "." + matches.get(i));
         }
         showLine();
     }
@@ -151,9 +248,97 @@ public class Ui {
     public void showArchived(int count, String scope) { // [NEW]
         showLine();
         if (count == 0) {
-            System.out.println("Nothing to archive for scope: " + scope + ".");
+            out.println("Nothing to archive for scope: " + scope + ".");
         } else {
-            System.out.println("Archived " + count + " task(s) (" + scope + ").");
+            out.println("Archived " + count + " task(s) (" + scope + ").");
+        }
+        showLine();
+    }
+
+    /**
+     * Prints the heading of an archive search. Matches follow one by one as they are found.
+     *
+     * @param word the keyword being searched for
+     */
+    public void showArchiveSearch(String word) {
+        showLine();
+        out.println("Searching the archive for \"" + word + "\":");
+    }
+
+    /**
+     * Prints one archived task that matched a search.
+     *
+     * @param t the matching task
+     * @param number the task's 1-based number in the archive
+     */
+    public void showArchiveMatch(Task t, long number) {
+        out.println("    " + number + "." + t);
+    }
+
+    /**
+     * Prints the summary that ends an archive search.
+     *
+     * @param count the number of matches
+     */
+    public void showArchiveSearchDone(int count) {
+        if (count == 0) {
+            out.println("No matches found.");
+        } else {
+            out.println(count + " archived task(s) found.");
+        }
+        showLine();
+    }
+
+    /**
+     * Prints a confirmation that a task has been restored from the archive.
+     *
+     * @param t the restored task
+     * @param size the total number of tasks after the restore
+     */
+    public void showUnarchived(Task t, int size) {
+        assert t != null : "Restored task must not be null";
+        showLine();
+        out.println("I've restored this task from the archive:\n" + t);
+        out.println("\nNow you have " + size + " tasks in the list.");
+        showLine();
+    }
+
+    /**
+     * Prints the tasks scheduled within a range of dates.
+     *
+     * @param tasks the scheduled tasks, in list order
+     * @param when the range, e.g. "on Oct 15 2019"
+     */
+    public void showScheduled(List<Task> tasks, String when) {
+        assert tasks != null : "Scheduled list must not be null";
+        showLine();
+        if (tasks.isEmpty()) {
+            out.println("Nothing scheduled " + when + ".");
+        } else {
+            out.println("Here are the tasks scheduled " + when + ":");
+            for (int i = 0; i < tasks.size(); i++) {
+                out.println("    " + (i + 1) + "." + tasks.get(i));
+            }
+        }
+        showLine();
+    }
+
+    /**
+     * Prints deadlines that are overdue or coming up next.
+     *
+     * @param deadlines the deadlines, soonest first
+     * @param isOverdue whether these are overdue deadlines rather than upcoming ones
+     */
+    public void showDue(List<Task> deadlines, boolean isOverdue) {
+        assert deadlines != null : "Deadline list must not be null";
+        showLine();
+        if (deadlines.isEmpty()) {
+            out.println(isOverdue ? "Nothing is overdue." : "No upcoming deadlines.");
+        } else {
+            out.println(isOverdue ? "These deadlines are overdue:" : "Here are your next deadlines:");
+            for (int i = 0; i < deadlines.size(); i++) {
+                out.println("    " + (i + 1) + "." + deadlines.get(i));
+            }
         }
         showLine();
     }
@@ -0,0 +1,31 @@
+package yin;
+
+/**
+ * Represents a command that moves an archived task back to the end of the task list.
+ */
+public class UnarchiveCommand extends Command {
+    private final long number;
+
+    /**
+     * Creates an UnarchiveCommand for the archived task with the given number.
+     *
+     * @param number 1-based number of the task in the archive, as shown by "archive find"
+     */
+    public UnarchiveCommand(long number) {
+        this.number = number;
+    }
+
+    /**
+     * Executes the command by restoring the task through storage and showing a confirmation.
+     *
+     * @param tasks The task list that receives the task
+     * @param ui The UI for displaying messages
+     * @param storage The storage holding the archive
+     * @throws YinException If there is no such archived task or the archive cannot be updated
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
+        Task restored = storage.unarchive(number, tasks);
+        ui.showUnarchived(restored, tasks.size());
+    }
+}
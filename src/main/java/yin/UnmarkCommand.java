@@ -4,7 +4,7 @@ package yin;
  * A command that marks a task as "not done" again.
  */
 public class UnmarkCommand extends Command {
-    private final int index0;
+    private final TaskRef ref;
 
     /**
      * Creates a new UnmarkCommand for the given task index.
@@ -12,7 +12,16 @@ public class UnmarkCommand extends Command {
      * @param index0 the zero-based index of the task to unmark
      */
     public UnmarkCommand(int index0) {
-        this.index0 = index0;
+        this(TaskRef.atPosition(index0));
+    }
+
+    /**
+     * Creates a new UnmarkCommand for the referenced task.
+     *
+     * @param ref the task to unmark, by position or id
+     */
+    public UnmarkCommand(TaskRef ref) {
+        this.ref = ref;
     }
 
     /**
@@ -23,15 +32,13 @@ public class UnmarkCommand extends Command {
      * @param tasks the task list
      * @param ui the UI for showing messages
      * @param storage the storage to save changes
-     * @throws YinException if the index is out of range
+     * @throws YinException if the index is out of range or no task has the id
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws YinException {
-        if (index0 < 0 || index0 >= tasks.size()) {
-            throw new YinException("Invalid index to unmark");
-        }
+        int index0 = ref.resolve(tasks, "Invalid index to unmark");
         Task task = tasks.unmark(index0);
         ui.showUnmarked(task);
-        storage.save(tasks.asList());
+        storage.recordUnmarked(index0, tasks);
     }
 }
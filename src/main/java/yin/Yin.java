@@ -1,7 +1,18 @@
 package yin;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 /**
  * Entry point of the Yin CLI application.
@@ -11,10 +22,13 @@ import java.util.Scanner;
  */
 public class Yin {
     /** Backing store for persisting tasks to disk. */
-    private static final Storage storage = new Storage("data/Yin.txt");
+    private static final Storage storage = Config.createStorage("data/Yin.txt");
 
-    /** Console user interface for input/output. */
-    private static final Ui ui = new Ui();
+    /** Size in characters of the input buffer used when input is not a terminal. */
+    private static final int INPUT_BUFFER_SIZE = 1 << 16;
+
+    /** Console user interface for input/output; buffered when input is not a terminal. */
+    private static Ui ui = new Ui();
 
     /** List of tasks manipulated by commands. */
     private static TaskList tasks = new TaskList();
@@ -26,20 +40,64 @@ public class Yin {
      * parses it into a Command using Parser.parse(String),
      * and executes it with the current TaskList, Ui, and Storage.
      * Any YinException thrown by parsing or execution is caught and shown through Ui.
+     * When there is no console, as when commands are piped in, input is read through a large
+     * BufferedReader and output is buffered and written once per command, instead of a Scanner
+     * and a write per line; what is printed is the same.
+     * Run with "--convert text|binary" to rewrite the data file in that format and exit instead,
+     * or with "--batch file [--continue]" to run the commands in a file and exit.
      *
-     * @param args command-line arguments (unused)
+     * @param args command-line arguments, empty to start the chat loop
      */
     public static void main(String[] args) {
+        boolean isInteractive = System.console() != null;
+        if (!isInteractive) {
+            ui = Ui.buffered();
+        }
+        if (args.length == 2 && args[0].equals("--convert")) {
+            convert(args[1]);
+            return;
+        }
+        if ((args.length == 2 || args.length == 3) && args[0].equals("--batch")) {
+            if (args.length == 3 && !args[2].equals("--continue")) {
+                System.err.println("Usage: --batch <file> [--continue]");
+                return;
+            }
+            runBatch(args[1], args.length == 3);
+            return;
+        }
+
         // load tasks from disk (first run creates file/folder).
         List<Task> loaded = storage.load();
         assert loaded != null : "Storage.load() should not return null";
-        tasks = new TaskList(loaded);
+        tasks = Config.createTaskList(loaded);
+        tasks.reserveIds(storage.getNextId());
 
         ui.showWelcome();
 
-        try (Scanner scanner = new Scanner(System.in)) {
+        if (isInteractive) {
+            try (Scanner scanner = new Scanner(System.in)) {
+                chat(scanner::nextLine);
+            }
+        } else {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(System.in, Charset.defaultCharset()), INPUT_BUFFER_SIZE)) {
+                chat(linesOf(in));
+            } catch (IOException e) {
+                System.err.println("Could not read input: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs the chat loop until an exit command, flushing output whenever it waits for input.
+     *
+     * @param nextLine source of input lines, which throws NoSuchElementException at the end
+     */
+    private static void chat(Supplier<String> nextLine) {
+        try {
             while (true) {
-                String input = scanner.nextLine();
+                ui.flushOutput();
+                String input = nextLine.get();
                 String command = input.trim();
 
                 try {
@@ -63,6 +121,79 @@ public class Yin {
                     ui.showError(e.getMessage());
                 }
             }
+        } finally {
+            ui.flushOutput();
+        }
+    }
+
+    /**
+     * Returns the lines of a reader split the way Scanner.nextLine() splits them, which also
+     * ends lines at U+0085, U+2028 and U+2029, and fails the same way at the end of input,
+     * which like Scanner it assumes on a read error.
+     *
+     * @param in the reader
+     * @return a source of lines
+     */
+    private static Supplier<String> linesOf(BufferedReader in) {
+        Deque<String> pending = new ArrayDeque<>();
+        return () -> {
+            if (pending.isEmpty()) {
+                String line;
+                try {
+                    line = in.readLine();
+                } catch (IOException e) {
+                    line = null;
+                }
+                if (line == null) {
+                    throw new NoSuchElementException("No line found");
+                }
+                int start = 0;
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                        pending.add(line.substring(start, i));
+                        start = i + 1;
+                    }
+                }
+                pending.add(line.substring(start));
+            }
+            return pending.poll();
+        };
+    }
+
+    /**
+     * Runs the commands in a file as one batch, saving once at the end, and reports throughput.
+     *
+     * @param path path of the file, one command per line
+     * @param isContinuing whether to go on past commands that fail
+     */
+    private static void runBatch(String path, boolean isContinuing) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Could not read batch file: " + e.getMessage());
+            return;
+        }
+        BatchStats stats = new AppCore(storage).runBatch(lines, ui, !isContinuing);
+        ui.showMessage(stats.toString());
+        ui.flushOutput();
+    }
+
+    /**
+     * Rewrites the data file in the named snapshot format.
+     *
+     * @param formatName "text" or "binary"
+     */
+    private static void convert(String formatName) {
+        Storage.Format target;
+        try {
+            target = Storage.Format.valueOf(formatName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: --convert text|binary");
+            return;
         }
+        int count = storage.convert(target);
+        System.out.println("Converted " + count + " task(s) to " + formatName.toLowerCase() + ".");
     }
 }
@@ -0,0 +1,157 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> readSegment(Archive archive, int n) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(archive.openSegment(n), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void complete_rollsOverAndSealsFullSegments() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("archive");
+        Archive archive = new Archive(dir, dir.resolveSibling("Archive.txt"));
+        archive.setSegmentBytes(100);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new Todo("task number " + i));
+        }
+        archive.prepare(tasks, 1);
+        archive.complete();
+
+        List<String> all = new ArrayList<>();
+        for (int n : archive.segments()) {
+            List<String> lines = readSegment(archive, n);
+            assertEquals(lines.size(), archive.countOf(n));
+            all.addAll(lines);
+        }
+        assertEquals(20, all.size());
+        assertEquals("T | 0 | task number 19", all.get(19));
+        assertTrue(archive.segments().size() > 1);
+        assertTrue(Files.exists(dir.resolve("segment-000000.txt.gz")));
+        assertFalse(Files.exists(dir.resolve("segment-000000.txt")));
+    }
+
+    @Test
+    public void recover_migratesLegacyFileWithIndex() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("archive");
+        Path legacy = dir.resolveSibling("Archive.txt");
+        LocalDateTime from = LocalDateTime.of(2019, 10, 15, 9, 0);
+        Task event = new Event("exam", from, from.plusHours(2));
+        event.mark();
+        Files.write(legacy, List.of("T | 0 | read book", TaskFormat.serialise(event)));
+
+        Archive archive = new Archive(dir, legacy);
+        archive.recover(0);
+        assertFalse(Files.exists(legacy));
+        assertEquals(List.of("T | 0 | read book", TaskFormat.serialise(event)), readSegment(archive, 0));
+
+        try (DataInputStream index = archive.openIndex(0)) {
+            assertEquals(0, index.readLong());
+            assertEquals(0, index.readByte());
+            assertEquals(Archive.NO_TIME, index.readLong());
+            assertEquals(Archive.NO_TIME, index.readLong());
+            assertEquals(("T | 0 | read book" + System.lineSeparator()).length(), index.readLong());
+            assertEquals(2 | 4, index.readByte());
+            assertEquals(from.toEpochSecond(ZoneOffset.UTC), index.readLong());
+            assertEquals(from.plusHours(2).toEpochSecond(ZoneOffset.UTC), index.readLong());
+        }
+    }
+
+    @Test
+    public void search_streamsMatchesWithArchiveNumbers() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("archive");
+        Archive archive = new Archive(dir, dir.resolveSibling("Archive.txt"));
+        archive.setSegmentBytes(100);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(i % 7 == 0 ? new Deadline("return Book " + i, LocalDateTime.of(2019, 10, 15, 18, 0))
+                    : new Todo("task " + i));
+        }
+        archive.prepare(tasks, 1);
+        archive.complete();
+
+        List<String> found = new ArrayList<>();
+        int count = archive.search("book", (t, number) -> found.add(number + "." + t.getDescription()));
+        assertEquals(5, count);
+        assertEquals(List.of("1.return Book 0", "8.return Book 7", "15.return Book 14",
+                "22.return Book 21", "29.return Book 28"), found);
+        assertEquals(0, archive.search("2019", (t, number) -> found.add("dates do not match")));
+    }
+
+    @Test
+    public void remove_rewritesOnlyTheAffectedSegment() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("archive");
+        Archive archive = new Archive(dir, dir.resolveSibling("Archive.txt"));
+        archive.setSegmentBytes(100);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            tasks.add(new Todo("task " + i));
+        }
+        archive.prepare(tasks, 1);
+        archive.complete();
+        int last = archive.segments().last();
+        long lastModified = Files.getLastModifiedTime(dir.resolve(String.format("segment-%06d.txt", last)))
+                .toMillis();
+
+        assertEquals("task 5", archive.read(5).getDescription());
+        assertTrue(archive.remove(5));
+        assertEquals("task 6", archive.read(5).getDescription());
+        assertEquals("task 12", archive.read(11).getDescription());
+        assertEquals(null, archive.read(12));
+        assertFalse(archive.remove(12));
+        assertEquals(lastModified, Files.getLastModifiedTime(
+                dir.resolve(String.format("segment-%06d.txt", last))).toMillis());
+
+        List<String> found = new ArrayList<>();
+        archive.search("task", (t, number) -> found.add(number + "." + t.getDescription()));
+        assertEquals(11, found.size());
+        assertEquals("4.task 4", found.get(3));
+        assertEquals("5.task 6", found.get(4));
+    }
+
+    @Test
+    public void recover_finishesInterruptedRemoval() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("archive");
+        Archive archive = new Archive(dir, dir.resolveSibling("Archive.txt"));
+        archive.prepare(List.of(new Todo("a"), new Todo("b"), new Todo("c")), 1);
+        archive.complete();
+
+        // Crash after the segment was rewritten but before its index was.
+        Files.write(dir.resolve("segment-000000.txt"), List.of("T | 0 | a", "T | 0 | c"));
+        Files.write(dir.resolve("pending"), List.of("# unarchive 0 1 3"));
+        archive.recover(1);
+        assertEquals(2, archive.countOf(0));
+        assertEquals("c", archive.read(2).getDescription());
+        assertFalse(Files.exists(dir.resolve("pending")));
+    }
+}
@@ -0,0 +1,85 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitListTest {
+
+    @Test
+    public void changes_matchListOfBooleans() {
+        Random random = new Random(7);
+        List<Boolean> expected = new ArrayList<>();
+        BitList actual = new BitList();
+        for (int i = 0; i < 20000; i++) {
+            boolean value = random.nextBoolean();
+            expected.add(value);
+            actual.add(value);
+        }
+        for (int n = 0; n < 40000; n++) {
+            int op = random.nextInt(10);
+            int size = expected.size();
+            if (op < 3 || size == 0) {
+                boolean value = random.nextInt(4) == 0;
+                expected.add(value);
+                actual.add(value);
+            } else if (op < 8) {
+                int index = random.nextInt(size);
+                expected.remove(index);
+                actual.remove(index);
+            } else {
+                int index = random.nextInt(size);
+                boolean value = random.nextBoolean();
+                expected.set(index, value);
+                actual.set(index, value);
+            }
+            if (n % 1000 == 0) {
+                assertMatches(expected, actual);
+            }
+        }
+        assertMatches(expected, actual);
+    }
+
+    @Test
+    public void reset_givesClearBits() {
+        BitList bits = new BitList();
+        bits.reset(10000);
+        bits.set(5000, true);
+        bits.remove(0);
+        assertEquals(9999, bits.size());
+        assertEquals(1, bits.cardinality());
+        assertEquals(4999, bits.next(0, true));
+        assertEquals(-1, bits.next(5000, true));
+        assertEquals(5000, bits.next(4999, false));
+    }
+
+    /**
+     * Checks every bit, the count and the next set and clear bit from every position.
+     *
+     * @param expected the model
+     * @param actual the bit list
+     */
+    private static void assertMatches(List<Boolean> expected, BitList actual) {
+        assertEquals(expected.size(), actual.size());
+        int ones = 0;
+        int nextSet = -1;
+        int nextClear = -1;
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            boolean value = expected.get(i);
+            assertEquals(value, actual.get(i));
+            if (value) {
+                ones++;
+                nextSet = i;
+            } else {
+                nextClear = i;
+            }
+            assertEquals(nextSet, actual.next(i, true));
+            assertEquals(nextClear, actual.next(i, false));
+        }
+        assertEquals(ones, actual.cardinality());
+    }
+}
@@ -0,0 +1,105 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DateTimesTest {
+
+    /** Describes the outcome of a parse so that a result and a failure can be compared. */
+    private static String outcome(String s, boolean isFast) {
+        try {
+            LocalDateTime t = isFast ? DateTimes.parseFlexible(s) : DateTimes.parseWithFormatters(s.trim());
+            return t.toString();
+        } catch (DateTimeParseException e) {
+            return "error";
+        }
+    }
+
+    @Test
+    public void parseFlexible_readsEachFormat() {
+        LocalDateTime sixPm = LocalDateTime.of(2019, 10, 15, 18, 0);
+        assertEquals(sixPm, DateTimes.parseFlexible("2019-10-15 1800"));
+        assertEquals(sixPm, DateTimes.parseFlexible("15/10/2019 1800"));
+        assertEquals(sixPm, DateTimes.parseFlexible(" 2019-10-15T18:00 "));
+        assertEquals(sixPm.withSecond(5).withNano(120_000_000), DateTimes.parseFlexible("2019-10-15T18:00:05.12"));
+        assertEquals(sixPm.withHour(0), DateTimes.parseFlexible("2019-10-15"));
+        assertEquals(sixPm.withHour(0), DateTimes.parseFlexible("15/10/2019"));
+        assertEquals(LocalDateTime.of(2019, 2, 28, 0, 0), DateTimes.parseFlexible("2019-02-30"));
+    }
+
+    @Test
+    public void parseFlexible_matchesFormattersOnRandomStrings() {
+        String[] pieces = {"2019", "2020", "0000", "9999", "-", "-", "/", "/", " ", "T", ":", ".", "0", "1", "2",
+            "9", "00", "02", "12", "13", "23", "24", "29", "30", "31", "59", "60", "1800", "2400", "x", "+"};
+        Random random = new Random(42);
+        for (int n = 0; n < 50000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String s = text.toString();
+            assertEquals("text: [" + s + "]", outcome(s, false), outcome(s, true));
+        }
+    }
+
+    @Test
+    public void parseFlexible_matchesFormattersOnEveryDayAndTimeShape() {
+        int[] years = {1, 1900, 2000, 2019, 2020, 9999};
+        for (int year : years) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    String[] texts = {
+                        String.format("%04d-%02d-%02d", year, month, day),
+                        String.format("%04d-%02d-%02d %02d%02d", year, month, day, day % 25, day * 2),
+                        String.format("%04d-%02d-%02dT%02d:%02d:%02d.%d", year, month, day, day % 25, day * 2,
+                                day + 30, day),
+                        String.format("%d/%d/%04d", day, month, year),
+                        String.format("%02d/%d/%04d %02d%02d", day, month, year, month * 2, day + 40),
+                    };
+                    for (String s : texts) {
+                        assertEquals("text: [" + s + "]", outcome(s, false), outcome(s, true));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void storageCodec_roundTripsRandomDateTimes() {
+        int[] nanoSteps = {1_000_000_000, 1_000_000, 1000, 1};
+        Random random = new Random(7);
+        for (int n = 0; n < 100000; n++) {
+            int nanoStep = nanoSteps[random.nextInt(nanoSteps.length)];
+            LocalDateTime t = LocalDateTime.of(random.nextInt(10200) - 100, 1 + random.nextInt(12),
+                    1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                    random.nextInt(1_000_000_000 / nanoStep) * nanoStep);
+            String stored = DateTimes.formatStorage(t);
+            assertEquals(t.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), stored);
+            String line = "| " + stored + " |";
+            LocalDateTime read = DateTimes.parseStorage(line, 2, 2 + stored.length());
+            if (t.getYear() >= 1 && t.getYear() <= 9999) {
+                assertEquals(t, read);
+            } else {
+                assertNull(read);
+            }
+        }
+    }
+
+    @Test
+    public void parseStorage_rejectsOtherLayouts() {
+        String[] texts = {"2019-10-15", "2019-10-15 1800", "15/10/2019 1800", "2019-02-30T18:00:00",
+            "2019-10-15T24:00:00", "2019-10-15T18:00:00.", "2019-10-15T18:00:00.1234567890", " 2019-10-15T18:00",
+            "2019-10-15T18:00 ", "+2019-10-15T18:00", "2019-1a-15T18:00"};
+        for (String s : texts) {
+            assertNull(s, DateTimes.parseStorage(s, 0, s.length()));
+        }
+    }
+}
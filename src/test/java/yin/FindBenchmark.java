@@ -0,0 +1,81 @@
+package yin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stand-alone benchmark for TaskList.find, run with
+ * {@code gradlew benchmark -Pbench=FindBenchmark -PbenchArgs="ea"}.
+ * For growing list sizes it times a sequential and a parallel scan for the keyword, and the
+ * indexed find, then reports the size from which the parallel scan wins at every larger size. That size
+ * is what TaskList.PARALLEL_SCAN_TASKS should be on the machine it runs on.
+ */
+public class FindBenchmark {
+    private static final int[] SIZES = {1_000, 10_000, 50_000, 100_000, 200_000, 500_000, 1_000_000};
+    private static final int REPETITIONS = 30;
+    private static final String[] WORDS = {"read", "book", "return", "report", "meeting", "buy", "milk",
+        "call", "mom", "project", "review", "submit", "draft", "email", "plan"};
+
+    /**
+     * Runs the comparison for the keyword given as the first argument.
+     *
+     * @param args the keyword to search for (default "ea", short enough to need a scan)
+     */
+    public static void main(String[] args) {
+        String word = args.length > 0 ? args[0] : "ea";
+        System.out.printf("find \"%s\" on %d cores%n", word, Runtime.getRuntime().availableProcessors());
+        int crossover = -1;
+        for (int size : SIZES) {
+            TaskList tasks = generate(size);
+            List<Task> all = tasks.asList();
+            String folded = word.toLowerCase();
+            long sequential = best(() -> TaskList.scan(all, folded, false));
+            long parallel = best(() -> TaskList.scan(all, folded, true));
+            long indexed = best(() -> tasks.find(word));
+            System.out.printf("%,9d tasks: sequential %7.3f ms, parallel %7.3f ms, find %7.3f ms%n",
+                    size, sequential / 1e6, parallel / 1e6, indexed / 1e6);
+            if (parallel >= sequential) {
+                crossover = -1;
+            } else if (crossover < 0) {
+                crossover = size;
+            }
+        }
+        System.out.println(crossover < 0 ? "Parallel scan never won" : "Parallel scan wins from " + crossover);
+    }
+
+    /**
+     * Builds a list of todos drawn from a small vocabulary, each with a unique tag.
+     *
+     * @param size number of tasks
+     * @return the task list
+     */
+    private static TaskList generate(int size) {
+        Random random = new Random(1);
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new Todo(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " item" + i));
+        }
+        return new TaskList(tasks);
+    }
+
+    /**
+     * Returns the fastest of several timed runs, after a warm-up.
+     *
+     * @param run the search to time
+     * @return the best time in nanoseconds
+     */
+    private static long best(Runnable run) {
+        for (int i = 0; i < REPETITIONS; i++) {
+            run.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPETITIONS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
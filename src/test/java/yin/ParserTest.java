@@ -1,7 +1,10 @@
 package yin;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class ParserTest {
@@ -27,4 +30,63 @@ public class ParserTest {
     public void parse_deleteNonInteger_throws() throws YinException {
         Parser.parse("delete x");
     }
+
+    @Test
+    public void parse_listStatusFilters_returnListCommand() throws YinException {
+        assertTrue(Parser.parse("list done") instanceof ListCommand);
+        assertTrue(Parser.parse("list  UNDONE ") instanceof ListCommand);
+    }
+
+    @Test
+    public void parse_archiveFindAcceptsAnyWhitespace() throws YinException {
+        assertTrue(Parser.parse("archive find book") instanceof ArchiveFindCommand);
+        assertTrue(Parser.parse("archive FIND\tbook") instanceof ArchiveFindCommand);
+        assertTrue(Parser.parse("archive  find\n\tbook ") instanceof ArchiveFindCommand);
+        assertTrue(Parser.parse("archive done") instanceof ArchiveCommand);
+        try {
+            Parser.parse("archive find\t");
+            throw new AssertionError("Expected an error for a missing keyword");
+        } catch (YinException e) {
+            assertEquals("archive find needs a keyword, e.g. \"archive find book\"", e.getMessage());
+        }
+    }
+
+    @Test
+    public void parse_keepsErrorMessages() {
+        String[][] cases = {
+            {"deadline   /by 2019-10-15",
+                "Give me a proper input please...\nDeadline format: deadline <desc> /by <when>"},
+            {"event book /to 2019-10-15 /from 2019-10-14",
+                "Please feed me a proper input man...\nEvent format: event <desc> /from <start> /to <end>"},
+            {"event book /from /to 2019-10-15",
+                "Please feed me some proper input man...\nEvent format: event <desc> /from <start> /to <end>"},
+            {"MARK #x", "Task number must be integer! e.g. \"mark 2\""},
+            {"between 2019-10-15", "Give two dates, e.g. \"between 2019-10-15 2019-10-20\""},
+            {"todo pay | #7", "Descriptions can't contain '|', sorry!"},
+            {"deadline a|b /by 2019-10-15", "Descriptions can't contain '|', sorry!"},
+        };
+        for (String[] c : cases) {
+            try {
+                Parser.parse(c[0]);
+                throw new AssertionError("Expected an error for: " + c[0]);
+            } catch (YinException e) {
+                assertEquals(c[0], c[1], e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void collapseSpaces_matchesRegexOnRandomText() {
+        String[] pieces = {" ", "  ", "\t", "\n", "\r", "\u000B", "\f", "\u0001", "\u2003", "a", "bc", "/by"};
+        Random random = new Random(42);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String s = text.toString();
+            assertEquals("text: [" + s + "]", s.trim().replaceAll("\\s+", " "), Tokenizer.collapseSpaces(s));
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SharedArrayListTest {
+
+    @Test
+    public void changesAfterSnapshots_matchArrayList() {
+        Random random = new Random(3);
+        List<Integer> expected = new ArrayList<>();
+        SharedArrayList<Integer> actual = new SharedArrayList<>();
+        List<List<Integer>> snapshots = new ArrayList<>();
+        List<List<Integer>> copies = new ArrayList<>();
+        for (int n = 0; n < 5000; n++) {
+            int op = random.nextInt(20);
+            int size = expected.size();
+            if (op < 8 || size == 0) {
+                expected.add(n);
+                actual.add(n);
+            } else if (op < 10) {
+                int index = random.nextInt(size + 1);
+                expected.add(index, n);
+                actual.add(index, n);
+            } else if (op < 14) {
+                int index = random.nextInt(size);
+                assertEquals(expected.remove(index), actual.remove(index));
+            } else if (op < 16) {
+                int index = random.nextInt(size);
+                assertEquals(expected.set(index, -n), actual.set(index, -n));
+            } else if (op < 17) {
+                int from = random.nextInt(size);
+                int to = from + random.nextInt(Math.min(5, size - from) + 1);
+                expected.subList(from, to).clear();
+                actual.subList(from, to).clear();
+            } else if (op < 18 && random.nextInt(10) == 0) {
+                expected.clear();
+                actual.clear();
+            } else {
+                snapshots.add(actual.snapshot());
+                copies.add(new ArrayList<>(expected));
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        assertEquals(expected, actual);
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(copies.get(i), snapshots.get(i));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package yin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Stand-alone benchmark for Storage, run with
+ * {@code gradlew benchmark -Pbench=StorageBenchmark -PbenchArgs="load 1000000"}.
+ * Numbers are wall-clock timings of a few repetitions after a warm-up run, which is
+ * enough to compare approaches on one machine, not to publish.
+ */
+public class StorageBenchmark {
+    private static final int REPETITIONS = 5;
+
+    /**
+     * Runs the scenario named by the first argument on a generated data file.
+     *
+     * @param args scenario name followed by the number of tasks to generate
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String scenario = args.length > 0 ? args[0] : "load";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path dir = Files.createTempDirectory("yin-bench");
+        Path data = dir.resolve("Yin.txt");
+        writeDataFile(data, size);
+        System.out.printf("%s, %d tasks, %d MB on disk%n", scenario, size, Files.size(data) >> 20);
+
+        switch (scenario) {
+        case "load":
+            benchLoad(data);
+            break;
+        case "formats":
+            benchFormats(data);
+            break;
+        case "durability":
+            benchDurability(data);
+            break;
+        case "dates":
+            benchDates(size);
+            break;
+        default:
+            System.err.println("Unknown scenario: " + scenario);
+        }
+    }
+
+    /**
+     * Writes a data file with a mix of todos, deadlines and events.
+     *
+     * @param data path of the file to write
+     * @param size number of task lines
+     * @throws IOException if the file cannot be written
+     */
+    static void writeDataFile(Path data, int size) throws IOException {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+        try (BufferedWriter out = Files.newBufferedWriter(data, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < size; i++) {
+                Task t;
+                switch (i % 3) {
+                case 0:
+                    t = new Todo("read chapter " + i + " of the book");
+                    break;
+                case 1:
+                    t = new Deadline("submit report " + i, base.plusHours(i));
+                    break;
+                default:
+                    t = new Event("meeting " + i, base.plusHours(i), base.plusHours(i + 2));
+                    break;
+                }
+                if (i % 4 == 0) {
+                    t.mark();
+                }
+                out.write(TaskFormat.serialise(t));
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Loads the data file repeatedly, printing per-phase timings and retained heap.
+     *
+     * @param data path of the data file
+     */
+    private static void benchLoad(Path data) {
+        Storage storage = new Storage(data.toString());
+        storage.load();
+        for (int i = 0; i < REPETITIONS; i++) {
+            long before = usedHeap();
+            long start = System.nanoTime();
+            List<Task> tasks = storage.load();
+            long elapsed = System.nanoTime() - start;
+            long retained = usedHeap() - before;
+            System.out.printf("load: %d ms, %d bytes/task retained | %s%n",
+                    elapsed / 1_000_000, retained / Math.max(1, tasks.size()), storage.getLastLoadStats());
+        }
+    }
+
+    /**
+     * Compares save and load times and file sizes of the text and binary snapshot formats.
+     *
+     * @param data path of a text data file to start from
+     * @throws IOException if the files cannot be written
+     */
+    private static void benchFormats(Path data) throws IOException {
+        List<Task> tasks = new Storage(data.toString()).load();
+        for (Storage.Format format : Storage.Format.values()) {
+            Path copy = data.resolveSibling(format + ".dat");
+            Storage storage = new Storage(copy.toString());
+            storage.setFormat(format);
+            for (int i = 0; i < REPETITIONS; i++) {
+                long start = System.nanoTime();
+                storage.save(tasks);
+                long saved = System.nanoTime();
+                storage.load();
+                long loaded = System.nanoTime();
+                System.out.printf("%s: save %d ms, load %d ms, %d bytes%n", format,
+                        (saved - start) / 1_000_000, (loaded - saved) / 1_000_000, Files.size(copy));
+            }
+        }
+    }
+
+    /**
+     * Times writing and reading back one date-time per task, as the date fields of a data file,
+     * with the storage codec against the ISO formatter and parseFlexible(String).
+     *
+     * @param size number of date-times
+     */
+    private static void benchDates(int size) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+        LocalDateTime[] times = new LocalDateTime[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = base.plusMinutes(37L * i);
+        }
+        String[] stored = new String[size];
+        for (int r = 0; r < REPETITIONS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                stored[i] = times[i].format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            }
+            long formatted = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                stored[i] = DateTimes.formatStorage(times[i]);
+            }
+            long encoded = System.nanoTime();
+            int sink = 0;
+            for (int i = 0; i < size; i++) {
+                sink += DateTimes.parseFlexible(stored[i]).getMinute();
+            }
+            long parsed = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                sink += DateTimes.parseStorage(stored[i], 0, stored[i].length()).getMinute();
+            }
+            long decoded = System.nanoTime();
+            System.out.printf("write: formatter %d ms, codec %d ms | read: parseFlexible %d ms, codec %d ms%s%n",
+                    (formatted - start) / 1_000_000, (encoded - formatted) / 1_000_000,
+                    (parsed - encoded) / 1_000_000, (decoded - parsed) / 1_000_000, sink == 42 ? " " : "");
+        }
+    }
+
+    /**
+     * Measures journal appends and full snapshot saves per second at each durability level.
+     *
+     * @param data path of a text data file to start from
+     */
+    private static void benchDurability(Path data) {
+        final int appends = 2000;
+        final int saves = 20;
+        List<Task> tasks = new Storage(data.toString()).load();
+        // The first round only warms up the JIT.
+        for (int round = 0; round < 2; round++) {
+            for (Durability level : Durability.values()) {
+                Path copy = data.resolveSibling(level + "-" + round + ".txt");
+                Storage storage = new Storage(copy.toString());
+                storage.setDurability(level);
+                TaskList list = new TaskList(storage.load());
+
+                long start = System.nanoTime();
+                for (int i = 0; i < appends; i++) {
+                    storage.recordAdded(list.addTodo("task " + i), list);
+                }
+                long appended = System.nanoTime();
+                for (int i = 0; i < saves; i++) {
+                    storage.save(tasks);
+                }
+                long saved = System.nanoTime();
+                if (round > 0) {
+                    System.out.printf("%s: %.0f appends/s, %.1f saves/s of %d tasks%n", level,
+                            appends / ((appended - start) / 1e9), saves / ((saved - appended) / 1e9), tasks.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the heap in use after a garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
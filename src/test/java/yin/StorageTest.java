@@ -0,0 +1,447 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String dataPath() {
+        return folder.getRoot().toPath().resolve("data").resolve("Yin.txt").toString();
+    }
+
+    @Test
+    public void load_replaysJournalOnTopOfSnapshot() {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("read book"), tasks);
+        storage.recordAdded(tasks.addTodo("return book"), tasks);
+        storage.recordAdded(tasks.addTodo("buy milk"), tasks);
+        tasks.mark(2);
+        storage.recordMarked(2, tasks);
+        tasks.delete(0);
+        storage.recordDeleted(0, tasks);
+
+        List<Task> loaded = new Storage(dataPath()).load();
+        assertEquals(2, loaded.size());
+        assertEquals("[T][ ] return book", loaded.get(0).toString());
+        assertEquals("[T][X] buy milk", loaded.get(1).toString());
+    }
+
+    @Test
+    public void save_startsNewEpochAndIgnoresOldJournal() throws IOException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("read book"), tasks);
+        Path journal = Path.of(dataPath() + ".journal");
+        byte[] staleJournal = Files.readAllBytes(journal);
+
+        storage.save(tasks.asList());
+        assertFalse(Files.exists(journal));
+
+        // Simulate a crash between writing the snapshot and removing the old journal.
+        Files.write(journal, staleJournal);
+        List<Task> loaded = new Storage(dataPath()).load();
+        assertEquals(1, loaded.size());
+    }
+
+    @Test
+    public void load_ignoresTornTrailingRecord() throws IOException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("read book"), tasks);
+        Path journal = Path.of(dataPath() + ".journal");
+        Files.write(journal, "delete | 0".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        Storage reloaded = new Storage(dataPath());
+        TaskList again = new TaskList(reloaded.load());
+        assertEquals(1, again.size());
+
+        reloaded.recordAdded(again.addTodo("buy milk"), again);
+        assertEquals(2, new Storage(dataPath()).load().size());
+    }
+
+    @Test
+    public void recordAdded_compactsLongJournalIntoSnapshot() throws IOException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        for (int i = 0; i < 1500; i++) {
+            storage.recordAdded(tasks.addTodo("task " + i), tasks);
+        }
+        List<String> journal = Files.readAllLines(Path.of(dataPath() + ".journal"));
+        assertTrue(journal.size() < 1000);
+        assertEquals(1500, new Storage(dataPath()).load().size());
+    }
+
+    @Test
+    public void writeBehind_queuesChangesUntilFlush() {
+        Storage storage = new Storage(dataPath());
+        storage.enableWriteBehind(60_000, 60_000);
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("read book"), tasks);
+        storage.recordAdded(tasks.addTodo("buy milk"), tasks);
+        tasks.mark(0);
+        storage.recordMarked(0, tasks);
+        assertFalse(Files.exists(Path.of(dataPath() + ".journal")));
+
+        storage.flush();
+        List<Task> loaded = new Storage(dataPath()).load();
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.get(0).isDone());
+    }
+
+    @Test
+    public void load_parallelChunksKeepFileOrder() throws IOException {
+        Path data = Path.of(dataPath());
+        Files.createDirectories(data.getParent());
+        StringBuilder text = new StringBuilder("# epoch 3\r\n");
+        for (int i = 0; i < 100_000; i++) {
+            text.append(i % 7 == 0 ? "garbage line" : "T | " + (i % 2) + " | caf\u00e9 task " + i).append("\r\n");
+        }
+        Files.write(data, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        Storage sequential = new Storage(dataPath());
+        List<Task> expected = sequential.load();
+        Storage parallel = new Storage(dataPath());
+        parallel.setParallelLoadThreshold(0);
+        List<Task> actual = parallel.load();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+        assertEquals(sequential.getLastLoadStats().getSkipped(), parallel.getLastLoadStats().getSkipped());
+
+        // The epoch header was recognised, so a journal of epoch 3 is replayed.
+        Files.write(Path.of(dataPath() + ".journal"), "# epoch 3\ndelete | 0\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected.size() - 1, parallel.load().size());
+    }
+
+    @Test
+    public void binaryFormat_roundTripsAndIsDetectedOnLoad() throws IOException {
+        Storage storage = new Storage(dataPath());
+        storage.setFormat(Storage.Format.BINARY);
+        TaskList tasks = new TaskList(storage.load());
+        tasks.addTodo("caf\u00e9 \u4e66");
+        tasks.addDeadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0));
+        tasks.addEvent("exam", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 5),
+                LocalDateTime.of(2019, 10, 15, 11, 0));
+        tasks.mark(1);
+        storage.save(tasks.asList());
+        storage.recordAdded(tasks.addTodo("after snapshot"), tasks);
+
+        List<Task> loaded = new Storage(dataPath()).load();
+        assertEquals(4, loaded.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(tasks.get(i).toString(), loaded.get(i).toString());
+        }
+        assertEquals(((Event) tasks.get(2)).getFrom(), ((Event) loaded.get(2)).getFrom());
+
+        assertEquals(4, new Storage(dataPath()).convert(Storage.Format.TEXT));
+        assertTrue(Files.readAllLines(Path.of(dataPath())).get(2).startsWith("D | 1 | return book"));
+    }
+
+    @Test
+    public void archive_interruptedByCrashIsCompletedOnLoad() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        tasks.addTodo("keep");
+        tasks.addTodo("old");
+        tasks.mark(1);
+        storage.archive(tasks.removeDone(), tasks.asList());
+        Path segment = Path.of(dataPath()).resolveSibling("archive").resolve("segment-000000.txt");
+        Path index = segment.resolveSibling("segment-000000.idx");
+        long archived = Files.size(segment);
+        String header = Files.readAllLines(Path.of(dataPath())).get(0);
+        String token = header.substring(header.lastIndexOf(' ') + 1);
+
+        // Crash after the snapshot carrying the token was written but while the archive was half appended.
+        Files.write(segment, "T | 1 | do".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Path intent = segment.resolveSibling("pending");
+        Files.write(intent, ("# archive " + token + " 0 " + archived + " " + Files.size(index) + "\nT | 1 | done\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, new Storage(dataPath()).load().size());
+        assertFalse(Files.exists(intent));
+        List<String> lines = Files.readAllLines(segment);
+        assertEquals(List.of("T | 1 | old | #2", "T | 1 | done"), lines);
+        assertEquals(2 * Archive.INDEX_ENTRY_BYTES, Files.size(index));
+
+        // Crash before the snapshot was written: no snapshot carries its token, so the archive is left alone.
+        String otherToken = String.valueOf(Long.parseLong(token) + 1);
+        Files.write(intent, ("# archive " + otherToken + " 0 " + Files.size(segment) + " " + Files.size(index)
+                + "\nT | 0 | keep\n").getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, new Storage(dataPath()).load().size());
+        assertFalse(Files.exists(intent));
+        assertEquals(lines, Files.readAllLines(segment));
+    }
+
+    @Test
+    public void load_givesTasksWithoutIdsStableIds() throws IOException {
+        Path data = Path.of(dataPath());
+        Files.createDirectories(data.getParent());
+        Files.write(data, "# epoch 1\nT | 0 | read book\nT | 0 | #5 is not an id\nT | 0 | buy milk | #2\n"
+                .getBytes(StandardCharsets.UTF_8));
+
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        assertEquals(3, tasks.get(0).getId());
+        assertEquals(4, tasks.get(1).getId());
+        assertEquals(2, tasks.get(2).getId());
+        storage.recordAdded(tasks.addTodo("return book"), tasks);
+
+        List<Task> loaded = new Storage(dataPath()).load();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(tasks.get(i).getId(), loaded.get(i).getId());
+        }
+        assertEquals(5, loaded.get(3).getId());
+
+        storage.save(tasks.asList());
+        assertTrue(Files.readAllLines(data).contains("T | 0 | read book | #3"));
+    }
+
+    /** Loads the data file into a task list the way the app does. */
+    private TaskList reload() {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        tasks.reserveIds(storage.getNextId());
+        return tasks;
+    }
+
+    @Test
+    public void load_doesNotReuseIdsOfDeletedOrArchivedTasks() throws Exception {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("read book"), tasks);
+        storage.recordAdded(tasks.addTodo("buy milk"), tasks);
+        tasks.delete(1);
+        storage.recordDeleted(1, tasks);
+        assertEquals(3, reload().addTodo("return book").getId());
+
+        storage.save(tasks.snapshot());
+        storage.recordAdded(tasks.addTodo("return book"), tasks);
+        tasks.mark(1);
+        storage.archive(tasks.removeDone(), tasks.asList());
+        assertEquals(4, reload().addTodo("call mum").getId());
+
+        storage.convert(Storage.Format.BINARY);
+        assertEquals(4, reload().addTodo("call mum").getId());
+
+        // Data saved before the next id was recorded falls back to the ids in the archive.
+        Path data = Path.of(dataPath());
+        Files.write(data, "# epoch 9\nT | 0 | read book | #1\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(4, reload().addTodo("call mum").getId());
+    }
+
+    @Test
+    public void batch_savesOnceAtEndAndStopsAtFirstError() {
+        List<String> script = List.of("todo read book", "", "todo return book", "mark 1", "delete 9", "todo buy milk");
+        Storage storage = new Storage(dataPath());
+        BatchStats stats = new AppCore(storage).runBatch(script, new FxUi(), true);
+        assertEquals(4, stats.getCommands());
+        assertEquals(1, stats.getFailed());
+        assertEquals(5, stats.getStoppedAt());
+        // One snapshot instead of a journal record per command.
+        assertFalse(Files.exists(Path.of(dataPath() + ".journal")));
+        List<Task> loaded = new Storage(dataPath()).load();
+        assertEquals(2, loaded.size());
+        assertEquals("[T][X] read book", loaded.get(0).toString());
+
+        stats = new AppCore(new Storage(dataPath())).runBatch(script, new FxUi(), false);
+        assertEquals(5, stats.getCommands());
+        assertEquals(0, stats.getStoppedAt());
+        assertEquals(5, new Storage(dataPath()).load().size());
+    }
+
+    @Test
+    public void archiveCommand_keepsTasksWhenArchivingFails() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("keep"), tasks);
+        storage.recordAdded(tasks.addTodo("old"), tasks);
+        tasks.mark(1);
+        storage.recordMarked(1, tasks);
+
+        // A file where the archive directory should be makes the intent impossible to write.
+        Path archiveDir = Path.of(dataPath()).resolveSibling("archive");
+        Files.createFile(archiveDir);
+        try {
+            new ArchiveCommand(ArchiveCommand.Scope.DONE).execute(tasks, new FxUi(), storage);
+            throw new AssertionError("Expected archiving to fail");
+        } catch (YinException e) {
+            assertTrue(e.getMessage().startsWith("Archiving failed"));
+        }
+        assertEquals(2, tasks.size());
+        storage.recordAdded(tasks.addTodo("new"), tasks);
+        assertEquals(3, new Storage(dataPath()).load().size());
+
+        Files.delete(archiveDir);
+        new ArchiveCommand(ArchiveCommand.Scope.DONE).execute(tasks, new FxUi(), storage);
+        assertEquals(2, tasks.size());
+        assertEquals(2, new Storage(dataPath()).load().size());
+        assertEquals(1, storage.searchArchive("old", (t, n) -> { }));
+    }
+
+    @Test
+    public void archive_failedSnapshotIsNotCompletedByLaterSaves() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("keep"), tasks);
+        storage.recordAdded(tasks.addTodo("old"), tasks);
+        tasks.mark(1);
+        storage.recordMarked(1, tasks);
+
+        // A directory in place of the temporary snapshot makes step 2 fail after the intent is written.
+        Path temp = Path.of(dataPath() + ".tmp");
+        Files.createDirectory(temp);
+        try {
+            new ArchiveCommand(ArchiveCommand.Scope.DONE).execute(tasks, new FxUi(), storage);
+            throw new AssertionError("Expected archiving to fail");
+        } catch (YinException e) {
+            assertTrue(e.getMessage().startsWith("Archiving failed"));
+        }
+        assertFalse(Files.exists(Path.of(dataPath()).resolveSibling("archive").resolve("pending")));
+        Files.delete(temp);
+        storage.recordAdded(tasks.addTodo("new"), tasks);
+
+        Storage reloaded = new Storage(dataPath());
+        assertEquals(3, reloaded.load().size());
+        assertEquals(0, reloaded.searchArchive("old", (t, n) -> { }));
+    }
+
+    @Test
+    public void load_tornJournalSaveDoesNotCompleteUnrelatedIntent() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        tasks.addTodo("keep");
+        tasks.addTodo("old");
+        tasks.mark(1);
+        storage.save(tasks.asList());
+        storage.recordAdded(tasks.addTodo("new"), tasks);
+
+        // Crash after writing the intent of an archive whose snapshot never made it, mid journal append.
+        Path journal = Path.of(dataPath() + ".journal");
+        Files.write(journal, "mark | 0".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Path archiveDir = Path.of(dataPath()).resolveSibling("archive");
+        Files.createDirectories(archiveDir);
+        Path intent = archiveDir.resolve("pending");
+        Files.write(intent, "# archive 2 0 0 0\nT | 1 | old\n".getBytes(StandardCharsets.UTF_8));
+
+        // Folding the torn journal writes the snapshot of epoch 2, which must not count as the intent's.
+        Storage reloaded = new Storage(dataPath());
+        assertEquals(3, reloaded.load().size());
+        assertFalse(Files.exists(intent));
+        assertEquals(0, reloaded.searchArchive("old", (t, n) -> { }));
+    }
+
+    @Test
+    public void unarchive_finishesAppendLeftByFailedArchive() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        storage.recordAdded(tasks.addTodo("keep"), tasks);
+        storage.recordAdded(tasks.addTodo("old"), tasks);
+        tasks.mark(1);
+        new ArchiveCommand(ArchiveCommand.Scope.DONE).execute(tasks, new FxUi(), storage);
+
+        // A directory in place of the segment index makes step 3 fail after the snapshot is written.
+        Path index = Path.of(dataPath()).resolveSibling("archive").resolve("segment-000000.idx");
+        byte[] indexBytes = Files.readAllBytes(index);
+        Files.delete(index);
+        Files.createDirectory(index);
+        storage.recordAdded(tasks.addTodo("done"), tasks);
+        tasks.mark(1);
+        new ArchiveCommand(ArchiveCommand.Scope.DONE).execute(tasks, new FxUi(), storage);
+        assertEquals(1, tasks.size());
+        Files.delete(index);
+        Files.write(index, indexBytes);
+
+        assertEquals("[T][X] old", storage.unarchive(1, tasks).toString());
+        assertEquals(2, tasks.size());
+        assertEquals(1, storage.searchArchive("done", (t, n) -> { }));
+        assertEquals(0, storage.searchArchive("old", (t, n) -> { }));
+    }
+
+    @Test
+    public void unarchive_restoresTaskOnlyOnceSaved() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        tasks.addTodo("keep");
+        tasks.addTodo("old");
+        tasks.addTodo("older");
+        tasks.mark(1);
+        tasks.mark(2);
+        storage.archive(tasks.removeDone(), tasks.asList());
+
+        // The journal cannot be written, so the save fails and the task stays archived only.
+        Path journal = Path.of(dataPath() + ".journal");
+        Files.createDirectory(journal);
+        try {
+            storage.unarchive(1, tasks);
+            throw new AssertionError("Expected the save to fail");
+        } catch (YinException e) {
+            assertEquals("Could not save the task list; the task is still archived", e.getMessage());
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(1, new Storage(dataPath()).load().size());
+
+        Task restored = storage.unarchive(1, tasks);
+        assertEquals("[T][X] old", restored.toString());
+        assertEquals(2, tasks.size());
+        assertEquals(2, new Storage(dataPath()).load().size());
+        // The archive now holds only the other task, so the same number finds it.
+        assertEquals("[T][X] older", storage.unarchive(1, tasks).toString());
+    }
+
+    @Test
+    public void unarchive_failedRemovalIsFinishedLaterOrUndone() throws IOException, YinException {
+        Storage storage = new Storage(dataPath());
+        TaskList tasks = new TaskList(storage.load());
+        tasks.addTodo("keep");
+        tasks.addTodo("old");
+        tasks.addTodo("older");
+        tasks.mark(1);
+        tasks.mark(2);
+        storage.archive(tasks.removeDone(), tasks.asList());
+        Path archiveDir = Path.of(dataPath()).resolveSibling("archive");
+
+        // The removal intent cannot be written, so the archive is unchanged and the restore is undone.
+        Path intentTemp = archiveDir.resolve("pending.tmp");
+        Files.createDirectory(intentTemp);
+        try {
+            storage.unarchive(1, tasks);
+            throw new AssertionError("Expected the removal to fail");
+        } catch (YinException e) {
+            assertTrue(e.getMessage().startsWith("Could not update the archive; the task is still archived"));
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(1, new Storage(dataPath()).load().size());
+        Files.delete(intentTemp);
+
+        // The segment cannot be rewritten once the intent is on disk, so the task is restored
+        // and the removal is finished by the next load.
+        Path segmentTemp = archiveDir.resolve("segment-000000.txt.tmp");
+        Files.createDirectory(segmentTemp);
+        assertEquals("[T][X] old", storage.unarchive(1, tasks).toString());
+        assertEquals(2, tasks.size());
+        Files.delete(segmentTemp);
+        Storage reloaded = new Storage(dataPath());
+        assertEquals(2, reloaded.load().size());
+        // Only "older" is left in the archive.
+        assertEquals(1, reloaded.searchArchive("old", (t, n) -> { }));
+    }
+}
@@ -0,0 +1,122 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TaskFormatTest {
+
+    /** The regex-based parser that TaskFormat replaced, kept as the reference behaviour. */
+    private static Task parseWithSplit(String line) {
+        String string = line.trim();
+        if (string.isEmpty()) {
+            return null;
+        }
+        String[] p = string.split("\\s*\\|\\s*");
+        if (p.length < 3) {
+            return null;
+        }
+        boolean done = "1".equals(p[1]);
+        Task t;
+        try {
+            switch (p[0]) {
+            case "T":
+                t = new Todo(p[2]);
+                break;
+            case "D":
+                if (p.length < 4) {
+                    return null;
+                }
+                t = new Deadline(p[2], DateTimes.parseFlexible(p[3]));
+                break;
+            case "E":
+                if (p.length < 5) {
+                    return null;
+                }
+                t = new Event(p[2], DateTimes.parseFlexible(p[3]), DateTimes.parseFlexible(p[4]));
+                break;
+            default:
+                return null;
+            }
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        if (done) {
+            t.mark();
+        }
+        return t;
+    }
+
+    private static String describe(Task t) {
+        return t == null ? "null" : t.getClass().getSimpleName() + " " + t + " " + t.isDone();
+    }
+
+    @Test
+    public void parse_roundTripsSerialisedTasks() {
+        Task deadline = new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0));
+        deadline.mark();
+        Task event = new Event("exam", LocalDateTime.of(2019, 10, 15, 9, 0),
+                LocalDateTime.of(2019, 10, 15, 11, 0));
+        for (Task t : new Task[] {new Todo("read book"), deadline, event}) {
+            assertEquals(describe(t), describe(TaskFormat.parse(TaskFormat.serialise(t))));
+        }
+    }
+
+    @Test
+    public void parse_skipsMalformedLines() {
+        assertNull(TaskFormat.parse("   "));
+        assertNull(TaskFormat.parse("T | 0"));
+        assertNull(TaskFormat.parse("D | 0 | no date |  "));
+        assertNull(TaskFormat.parse("X | 0 | unknown type"));
+        assertNull(TaskFormat.parse("D | 0 | bad date | not-a-date"));
+    }
+
+    @Test
+    public void parse_matchesRegexSplitOnRandomLines() {
+        String[] pieces = {"T", "D", "E", "0", "1", "|", "|", " ", "  ", "\t", "book", "a b",
+            "2019-10-15T18:00:00", "2019-10-15", "x"};
+        Random random = new Random(42);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                line.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String s = line.toString();
+            assertEquals("line: [" + s + "]", describe(parseWithSplit(s)), describe(TaskFormat.parse(s)));
+        }
+    }
+
+    @Test
+    public void serialise_roundTripsId() {
+        Task t = new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0));
+        t.setId(42);
+        String line = TaskFormat.serialise(t);
+        assertTrue(line, line.endsWith(" | #42"));
+        assertEquals(42, TaskFormat.parse(line).getId());
+        assertEquals(0, TaskFormat.parse("T | 0 | read book").getId());
+    }
+
+    @Test
+    public void parse_descriptionWithBar_doesNotTakeIdFromDescription() {
+        Task t = new Todo("pay | #7");
+        t.setId(1);
+        String line = TaskFormat.serialise(t);
+        assertEquals(0, TaskFormat.parse(line).getId());
+        String record = "add | " + line;
+        assertEquals(0, TaskFormat.parse(record, record.indexOf('|') + 1, record.length()).getId());
+
+        Task d = new Deadline("a|#2", LocalDateTime.of(2019, 10, 15, 18, 0));
+        d.setId(3);
+        assertNull(TaskFormat.parse(TaskFormat.serialise(d)));
+        Task u = new Todo("a|b");
+        u.setId(3);
+        assertEquals(0, TaskFormat.parse(TaskFormat.serialise(u)).getId());
+    }
+}
@@ -0,0 +1,183 @@
+package yin;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stand-alone benchmark for the TaskList backings, run with
+ * {@code gradlew benchmark -Pbench=TaskListBenchmark -PbenchArgs="positional 10000"}.
+ * The "positional" scenario times, for each list size, positional gets, deletes at random
+ * positions (as a script deleting many tasks would) and lookups by id on every backing.
+ * The "memory" scenario reports the heap each backing retains per task, and the "snapshot"
+ * scenario times taking a snapshot and then adding a task, against copying with asList() and
+ * reading through view().
+ */
+public class TaskListBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final int REPETITIONS = 3;
+
+    /**
+     * Runs the scenario named by the first argument.
+     *
+     * @param args scenario name, then the number of operations of each kind per run
+     *     ("positional", default 10000) or of tasks ("memory", default 1000000)
+     */
+    public static void main(String[] args) {
+        String scenario = args.length > 0 ? args[0] : "positional";
+        switch (scenario) {
+        case "positional":
+            benchPositional(args.length > 1 ? Integer.parseInt(args[1]) : 10_000);
+            break;
+        case "snapshot":
+            benchSnapshot(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            break;
+        case "memory":
+            benchMemory(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            break;
+        default:
+            System.err.println("Unknown scenario: " + scenario);
+        }
+    }
+
+    /**
+     * Times positional and id operations on every backing at each list size.
+     *
+     * @param operations number of operations of each kind per run
+     */
+    private static void benchPositional(int operations) {
+        System.out.printf("%d operations of each kind%n", operations);
+        for (int size : SIZES) {
+            List<Task> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tasks.add(new Todo("task " + i));
+            }
+            for (TaskList.Backing backing : TaskList.Backing.values()) {
+                long get = Long.MAX_VALUE;
+                long delete = Long.MAX_VALUE;
+                long byId = Long.MAX_VALUE;
+                for (int r = 0; r < REPETITIONS; r++) {
+                    TaskList list = new TaskList(tasks, backing);
+                    Random random = new Random(r);
+                    long start = System.nanoTime();
+                    int sink = 0;
+                    for (int i = 0; i < operations; i++) {
+                        sink += list.get(random.nextInt(list.size())).getDescription().length();
+                    }
+                    long gotten = System.nanoTime();
+                    for (int i = 0; i < operations; i++) {
+                        list.delete(random.nextInt(list.size()));
+                    }
+                    long deleted = System.nanoTime();
+                    for (int i = 0; i < operations; i++) {
+                        sink += list.indexOf(1 + random.nextInt(size));
+                    }
+                    long found = System.nanoTime();
+                    get = Math.min(get, gotten - start);
+                    delete = Math.min(delete, deleted - gotten);
+                    byId = Math.min(byId, found - deleted);
+                    if (sink == 42) {
+                        System.out.print("");
+                    }
+                }
+                System.out.printf("%,9d tasks %-8s: get %6.3f ms, delete %8.3f ms, find by id %6.3f ms%n",
+                        size, backing, get / 1e6, delete / 1e6, byId / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Times rounds of reading the whole list and then changing it, as list, archive or a journal
+     * compaction followed by more edits would, through asList(), snapshot() and view().
+     *
+     * @param rounds number of read-then-add rounds per run
+     */
+    private static void benchSnapshot(int rounds) {
+        System.out.printf("%d rounds of read-then-add%n", rounds);
+        for (int size : SIZES) {
+            List<Task> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tasks.add(new Todo("task " + i));
+            }
+            for (TaskList.Backing backing : TaskList.Backing.values()) {
+                long copied = Long.MAX_VALUE;
+                long snapshotted = Long.MAX_VALUE;
+                long viewed = Long.MAX_VALUE;
+                for (int r = 0; r < REPETITIONS; r++) {
+                    TaskList list = new TaskList(tasks, backing);
+                    long start = System.nanoTime();
+                    int sink = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        sink += list.asList().size();
+                        list.addTodo("extra " + i);
+                    }
+                    long middle = System.nanoTime();
+                    for (int i = 0; i < rounds; i++) {
+                        sink += list.snapshot().size();
+                        list.addTodo("extra " + i);
+                    }
+                    long afterSnapshots = System.nanoTime();
+                    for (int i = 0; i < rounds; i++) {
+                        sink += list.view().size();
+                        list.addTodo("extra " + i);
+                    }
+                    long end = System.nanoTime();
+                    copied = Math.min(copied, middle - start);
+                    snapshotted = Math.min(snapshotted, afterSnapshots - middle);
+                    viewed = Math.min(viewed, end - afterSnapshots);
+                    if (sink == 42) {
+                        System.out.print("");
+                    }
+                }
+                System.out.printf("%,9d tasks %-8s: asList %8.3f ms, snapshot %8.3f ms, view %8.3f ms%n",
+                        size, backing, copied / 1e6, snapshotted / 1e6, viewed / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Measures the heap each backing retains per task for a mix of todos, deadlines and events.
+     *
+     * @param size number of tasks
+     */
+    private static void benchMemory(int size) {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            System.out.printf("%-8s: %d bytes/task retained%n", backing, retained(backing, size) / size);
+        }
+    }
+
+    /**
+     * Returns the heap retained by a task list of the given backing. The list is local to this
+     * call, so none is still reachable when the next backing is measured.
+     *
+     * @param backing the backing to measure
+     * @param size number of tasks
+     * @return retained bytes
+     */
+    private static long retained(TaskList.Backing backing, int size) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+        long before = StorageBenchmark.usedHeap();
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+            case 0:
+                tasks.add(new Todo("read chapter " + i + " of the book"));
+                break;
+            case 1:
+                tasks.add(new Deadline("submit report " + i, base.plusHours(i)));
+                break;
+            default:
+                tasks.add(new Event("meeting " + i, base.plusHours(i), base.plusHours(i + 2)));
+                break;
+            }
+        }
+        TaskList list = new TaskList(tasks, backing);
+        tasks = null;
+        long retained = StorageBenchmark.usedHeap() - before;
+        if (list.size() != size) {
+            throw new IllegalStateException("Lost tasks");
+        }
+        return retained;
+    }
+}
@@ -0,0 +1,280 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TaskListTest {
+
+    /** The linear scan that find replaced, kept as the reference behaviour. */
+    private static List<Task> scan(TaskList tasks, String word) {
+        List<Task> out = new ArrayList<>();
+        for (Task t : tasks.asList()) {
+            if (t.getDescription().toLowerCase().contains(word.toLowerCase())) {
+                out.add(t);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void removeDone_keepsOrderOfBothParts() {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 10; i++) {
+            tasks.addTodo("task " + i);
+            if (i % 3 == 0) {
+                tasks.mark(i);
+            }
+        }
+        List<Task> done = tasks.removeDone();
+        assertEquals("[[T][ ] task 1, [T][ ] task 2, [T][ ] task 4, [T][ ] task 5, [T][ ] task 7, [T][ ] task 8]",
+                tasks.asList().toString());
+        assertEquals("[[T][X] task 0, [T][X] task 3, [T][X] task 6, [T][X] task 9]", done.toString());
+    }
+
+    @Test
+    public void find_matchesScanWhileListChanges() {
+        String[] words = {"Read", "book", "return", "BOOKS", "ab", "a-b", "caf\u00e9", "x1", "", "re-read"};
+        String[] queries = {"book", "BO", "ook", "read b", "a-b", "-", "k r", "\u00e9", "re", "s", "1", " "};
+        Random random = new Random(7);
+        TaskList tasks = new TaskList();
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || tasks.size() == 0) {
+                StringBuilder desc = new StringBuilder();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    desc.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "");
+                }
+                tasks.add(new Todo(desc.toString()));
+            } else if (op < 7) {
+                tasks.delete(random.nextInt(tasks.size()));
+            } else if (op < 8) {
+                tasks.mark(random.nextInt(tasks.size()));
+            } else if (op < 9 && random.nextInt(20) == 0) {
+                tasks.removeDone();
+            } else if (random.nextInt(100) == 0) {
+                tasks.clear();
+            }
+            String query = queries[random.nextInt(queries.length)];
+            assertEquals("query: " + query, scan(tasks, query), tasks.find(query));
+        }
+    }
+
+    @Test
+    public void occurringBetween_matchesOccursOnWhileListChanges() {
+        Random random = new Random(11);
+        LocalDate base = LocalDate.of(2019, 10, 1);
+        TaskList tasks = new TaskList();
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (op < 6 || tasks.size() == 0) {
+                LocalDateTime start = base.plusDays(random.nextInt(60)).atTime(random.nextInt(24), 0);
+                switch (random.nextInt(3)) {
+                case 0:
+                    tasks.addTodo("todo");
+                    break;
+                case 1:
+                    tasks.addDeadline("deadline", start);
+                    break;
+                default:
+                    tasks.addEvent("event", start, start.plusHours(random.nextInt(24 * 10) - 24));
+                    break;
+                }
+            } else if (op < 9) {
+                tasks.delete(random.nextInt(tasks.size()));
+            } else if (random.nextInt(50) == 0) {
+                tasks.clear();
+            }
+            LocalDate from = base.plusDays(random.nextInt(60));
+            LocalDate to = from.plusDays(random.nextInt(3) == 0 ? 0 : random.nextInt(10));
+            List<Task> expected = new ArrayList<>();
+            for (Task t : tasks.asList()) {
+                for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                    if (t.occursOn(d)) {
+                        expected.add(t);
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected, tasks.occurringBetween(from, to));
+        }
+    }
+
+    @Test
+    public void overdueAndUpcoming_trackMarksAndDeletes() {
+        LocalDateTime now = LocalDateTime.of(2019, 10, 15, 12, 0);
+        Random random = new Random(3);
+        TaskList tasks = new TaskList();
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || tasks.size() == 0) {
+                tasks.addDeadline("d", now.plusHours(random.nextInt(200) - 100));
+            } else if (op < 6) {
+                tasks.addTodo("t");
+            } else if (op < 7) {
+                tasks.delete(random.nextInt(tasks.size()));
+            } else if (op < 8) {
+                tasks.mark(random.nextInt(tasks.size()));
+            } else if (op < 9) {
+                tasks.unmark(random.nextInt(tasks.size()));
+            } else if (random.nextInt(20) == 0) {
+                tasks.removeDone();
+            }
+            List<Deadline> undone = new ArrayList<>();
+            for (Task t : tasks.asList()) {
+                if (t instanceof Deadline && !t.isDone()) {
+                    undone.add((Deadline) t);
+                }
+            }
+            // A stable sort keeps list order among equal due times.
+            undone.sort((a, b) -> a.getBy().compareTo(b.getBy()));
+            List<Task> overdue = new ArrayList<>();
+            List<Task> upcoming = new ArrayList<>();
+            for (Deadline d : undone) {
+                (d.getBy().isBefore(now) ? overdue : upcoming).add(d);
+            }
+            int count = random.nextInt(8) + 1;
+            assertEquals(overdue, tasks.overdue(now));
+            assertEquals(upcoming.subList(0, Math.min(count, upcoming.size())), tasks.upcoming(now, count));
+        }
+    }
+
+    @Test
+    public void indexOf_findsTasksByIdAfterDeletes() throws YinException {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 20; i++) {
+            tasks.addTodo("task " + i);
+        }
+        long id = tasks.get(15).getId();
+        tasks.delete(3);
+        tasks.delete(0);
+        tasks.mark(4);
+        tasks.removeDone();
+        assertEquals("[T][ ] task 15", tasks.get(tasks.indexOf(id)).toString());
+        assertEquals(-1, tasks.indexOf(tasks.addTodo("extra").getId() + 1));
+        assertEquals(12, TaskRef.withId(id).resolve(tasks, "unused"));
+    }
+
+    @Test
+    public void otherBackings_behaveLikeArrayBacking() {
+        for (TaskList.Backing backing : new TaskList.Backing[] {TaskList.Backing.TREE, TaskList.Backing.COLUMNAR}) {
+            Random random = new Random(8);
+            LocalDateTime base = LocalDateTime.of(2019, 10, 1, 9, 0);
+            LocalDateTime now = base.plusDays(10);
+            TaskList array = new TaskList(new ArrayList<>(), TaskList.Backing.ARRAY);
+            TaskList other = new TaskList(new ArrayList<>(), backing);
+            for (int n = 0; n < 2000; n++) {
+                int op = random.nextInt(10);
+                if (op < 4 || array.size() == 0) {
+                    LocalDateTime when = base.plusMinutes(random.nextInt(30 * 24 * 60)).withNano(n % 3 * 1000);
+                    array.addDeadline("task " + n, when);
+                    other.addDeadline("task " + n, when);
+                } else if (op < 5) {
+                    LocalDateTime from = base.plusHours(random.nextInt(30 * 24));
+                    LocalDateTime to = from.plusHours(random.nextInt(100) - 20);
+                    array.addEvent("caf\u00e9 " + n, from, to);
+                    other.addEvent("caf\u00e9 " + n, from, to);
+                } else if (op < 7) {
+                    int index = random.nextInt(array.size());
+                    assertEquals(array.delete(index).toString(), other.delete(index).toString());
+                } else if (op < 9) {
+                    int index = random.nextInt(array.size());
+                    boolean isDone = random.nextBoolean();
+                    assertEquals((isDone ? array.mark(index) : array.unmark(index)).toString(),
+                            (isDone ? other.mark(index) : other.unmark(index)).toString());
+                } else {
+                    assertEquals(array.removeDone().toString(), other.removeDone().toString());
+                }
+                if (array.size() > 0) {
+                    long id = array.get(random.nextInt(array.size())).getId();
+                    assertEquals(array.indexOf(id), other.indexOf(id));
+                }
+            }
+            assertEquals(array.asList().toString(), other.asList().toString());
+            assertEquals(array.find("task 1").toString(), other.find("task 1").toString());
+            LocalDate day = now.toLocalDate();
+            assertEquals(array.occurringBetween(day, day.plusDays(2)).toString(),
+                    other.occurringBetween(day, day.plusDays(2)).toString());
+            assertEquals(array.overdue(now).toString(), other.overdue(now).toString());
+            assertEquals(array.upcoming(now, 7).toString(), other.upcoming(now, 7).toString());
+        }
+    }
+
+    @Test
+    public void doneBitmap_matchesStatusWhileListChanges() {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            Random random = new Random(21);
+            TaskList tasks = new TaskList(new ArrayList<>(), backing);
+            for (int n = 0; n < 3000; n++) {
+                int op = random.nextInt(20);
+                if (op < 8 || tasks.size() == 0) {
+                    tasks.addTodo("task " + n);
+                } else if (op < 12) {
+                    tasks.delete(random.nextInt(tasks.size()));
+                } else if (op < 19) {
+                    int index = random.nextInt(tasks.size());
+                    if (random.nextBoolean()) {
+                        tasks.mark(index);
+                    } else {
+                        tasks.unmark(index);
+                    }
+                } else {
+                    tasks.removeDone();
+                }
+                List<Integer> done = new ArrayList<>();
+                List<Integer> undone = new ArrayList<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    (tasks.get(i).isDone() ? done : undone).add(i);
+                }
+                assertEquals(done.size(), tasks.countDone());
+                assertEquals(done.toString(), Arrays.toString(tasks.positionsWithStatus(true)));
+                assertEquals(undone.toString(), Arrays.toString(tasks.positionsWithStatus(false)));
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_isUnaffectedByLaterChanges() {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            TaskList tasks = new TaskList(new ArrayList<>(), backing);
+            for (int i = 0; i < 50; i++) {
+                tasks.addTodo("task " + i);
+            }
+            tasks.mark(3);
+            List<Task> before = tasks.snapshot();
+            String expected = tasks.asList().toString();
+
+            tasks.delete(10);
+            tasks.addTodo("extra");
+            List<Task> middle = tasks.snapshot();
+            String expectedMiddle = tasks.asList().toString();
+            for (int i = 0; i < 30; i++) {
+                tasks.addTodo("appended " + i);
+            }
+            List<Task> appended = tasks.snapshot();
+            String expectedAppended = tasks.asList().toString();
+            tasks.removeDone();
+            tasks.delete(0);
+            tasks.clear();
+
+            assertEquals(backing + "", expected, before.toString());
+            assertEquals(backing + "", expectedMiddle, middle.toString());
+            assertEquals(backing + "", expectedAppended, appended.toString());
+            assertEquals(0, tasks.size());
+            try {
+                before.remove(0);
+                fail("Snapshot should be unmodifiable");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+    }
+}
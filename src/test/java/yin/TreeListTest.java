@@ -0,0 +1,61 @@
+package yin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TreeListTest {
+
+    @Test
+    public void positionalChanges_matchArrayList() {
+        Random random = new Random(5);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expected.add(i * 2);
+        }
+        TreeList<Integer> actual = new TreeList<>(expected);
+        for (int n = 0; n < 5000; n++) {
+            int op = random.nextInt(10);
+            int size = expected.size();
+            if (op < 4 || size == 0) {
+                int index = random.nextInt(size + 1);
+                expected.add(index, n);
+                actual.add(index, n);
+            } else if (op < 8) {
+                int index = random.nextInt(size);
+                assertEquals(expected.remove(index), actual.remove(index));
+            } else if (op < 9) {
+                int index = random.nextInt(size);
+                assertEquals(expected.set(index, -n), actual.set(index, -n));
+            } else {
+                int from = random.nextInt(size);
+                int to = from + random.nextInt(Math.min(5, size - from) + 1);
+                expected.subList(from, to).clear();
+                actual.subList(from, to).clear();
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected, new ArrayList<>(actual));
+    }
+
+    @Test
+    public void search_findsElementsOfSortedList() {
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 3) {
+            sorted.add(i);
+        }
+        TreeList<Integer> tree = new TreeList<>(sorted);
+        tree.remove(10);
+        tree.add(0, -1);
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(i, tree.search(tree.get(i), Comparator.naturalOrder()));
+        }
+        assertEquals(-1, tree.search(4, Comparator.naturalOrder()));
+    }
+}